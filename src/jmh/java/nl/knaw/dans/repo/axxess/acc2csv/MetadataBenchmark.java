@@ -0,0 +1,100 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.IndexBuilder;
+import com.healthmarketscience.jackcess.RelationshipBuilder;
+import com.healthmarketscience.jackcess.TableBuilder;
+import nl.knaw.dans.repo.axxess.core.KeyTypeValueMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up the relationships of all tables of a synthetic wide schema, in which every table relates to two
+ * others: with {@link Database#getRelationships(com.healthmarketscience.jackcess.Table)} per table, as metadata
+ * extraction did before, and with a {@link SchemaIndex}. Also measures the extraction of all metadata.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataBenchmark {
+
+    @Param({"100", "400"})
+    private int tableCount;
+
+    private Database db;
+
+    @Setup
+    public void setUp() throws IOException {
+        File file = new File("target/jmh/wide-" + tableCount + ".accdb");
+        if (!file.exists()) {
+            createWideSchema(file, tableCount);
+        }
+        db = DatabaseBuilder.open(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        db.close();
+    }
+
+    @Benchmark
+    public void relationshipsPerTable(Blackhole blackhole) throws IOException {
+        for (String tableName : db.getTableNames()) {
+            blackhole.consume(db.getRelationships(db.getTable(tableName)));
+        }
+    }
+
+    @Benchmark
+    public void schemaIndex(Blackhole blackhole) throws IOException {
+        SchemaIndex schema = new SchemaIndex(db, new TableSelection());
+        for (String tableName : db.getTableNames()) {
+            blackhole.consume(schema.getRelationships(db.getTable(tableName)));
+        }
+    }
+
+    @Benchmark
+    public KeyTypeValueMatrix metadata() throws IOException {
+        return new MetadataExtractor().getMetadata(db);
+    }
+
+    // every table relates to two others
+    private static void createWideSchema(File file, int tableCount) throws IOException {
+        file.getParentFile().mkdirs();
+        try (Database database = DatabaseBuilder.create(Database.FileFormat.V2010, file)) {
+            for (int i = 0; i < tableCount; i++) {
+                new TableBuilder("t" + i)
+                  .addColumn(new ColumnBuilder("id", DataType.LONG).setAutoNumber(true))
+                  .addColumn(new ColumnBuilder("parent", DataType.LONG))
+                  .addColumn(new ColumnBuilder("other", DataType.LONG))
+                  .addIndex(new IndexBuilder(IndexBuilder.PRIMARY_KEY_NAME).addColumns("id").setPrimaryKey())
+                  .toTable(database);
+            }
+            for (int i = 1; i < tableCount; i++) {
+                new RelationshipBuilder("t" + (i / 2), "t" + i).addColumns("id", "parent").toRelationship(database);
+                new RelationshipBuilder("t" + (i * 7 % tableCount), "t" + i).addColumns("id", "other")
+                                                                            .toRelationship(database);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the same records with a {@link CSVPrinter} on an {@link OutputStreamWriter}, the way table data was
+ * written before, and with a {@link CsvChannelWriter}. Output goes to a {@link NullOutputStream}, so only the
+ * quoting and encoding are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvChannelWriterBenchmark {
+
+    private static final int RECORD_COUNT = 200000;
+
+    @Param({"UTF-8", "windows-1252"})
+    private String charsetName;
+
+    private Charset charset;
+    private List<Object[]> records;
+
+    @Setup
+    public void setUp() {
+        charset = Charset.forName(charsetName);
+        Random random = new Random(7);
+        records = new ArrayList<>();
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            records.add(new Object[] {i, "Some text value " + random.nextInt(), random.nextDouble(),
+              "2018-06-04 12:47:00", random.nextBoolean() ? "with \"quotes\", comma" : null, "\u00e9\u20ac"});
+        }
+    }
+
+    @Benchmark
+    public void csvPrinter() throws IOException {
+        try (CSVPrinter printer = new CSVPrinter(new OutputStreamWriter(new NullOutputStream(), charset),
+          CSVFormat.RFC4180)) {
+            for (Object[] record : records) {
+                printer.printRecord(record);
+            }
+        }
+    }
+
+    @Benchmark
+    public void csvChannelWriter() throws IOException {
+        try (CsvChannelWriter writer = new CsvChannelWriter(Channels.newChannel(new NullOutputStream()),
+          CSVFormat.RFC4180, charset)) {
+            for (Object[] record : records) {
+                writer.printRecord(record);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import com.healthmarketscience.jackcess.DataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escapes and unescapes the line breaks of {@link DataType#MEMO} values with the two {@link String#replaceAll}
+ * calls per direction that {@link DefaultCodex} made before, and with the codex itself. One in
+ * <code>lineBreakEvery</code> values has line breaks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultCodexBenchmark {
+
+    private static final int VALUE_COUNT = 100000;
+
+    @Param({"5", "1000000"})
+    private int lineBreakEvery;
+
+    private final DefaultCodex codex = new DefaultCodex(null);
+    private final StringBuilder out = new StringBuilder();
+    private Codex.Encoder encoder;
+    private String[] values;
+    private String[] encodedValues;
+
+    @Setup
+    public void setUp() {
+        encoder = codex.getEncoder(DataType.MEMO);
+        Random random = new Random(7);
+        values = new String[VALUE_COUNT];
+        encodedValues = new String[VALUE_COUNT];
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int line = random.nextInt(lineBreakEvery) == 0 ? 3 : 1; line > 0; line--) {
+                sb.append("Some memo text of a line, ").append(random.nextInt()).append(line > 1 ? "\r\n" : "");
+            }
+            values[i] = sb.toString();
+            encodedValues[i] = (String) codex.encode(DataType.MEMO, values[i]);
+        }
+    }
+
+    @Benchmark
+    public void encodeWithReplaceAll(Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(value.replaceAll("\r", "\u0002").replaceAll("\n", "\u0001"));
+        }
+    }
+
+    @Benchmark
+    public void encodeWithCodex(Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(codex.encode(DataType.MEMO, value));
+        }
+    }
+
+    @Benchmark
+    public void encodeWithEncoder(Blackhole blackhole) {
+        for (String value : values) {
+            out.setLength(0);
+            blackhole.consume(encoder.encode(value, out));
+        }
+    }
+
+    @Benchmark
+    public void decodeWithReplaceAll(Blackhole blackhole) {
+        for (String value : encodedValues) {
+            blackhole.consume(value.replaceAll("\u0002", "\r").replaceAll("\u0001", "\n"));
+        }
+    }
+
+    @Benchmark
+    public void decodeWithCodex(Blackhole blackhole) {
+        for (String value : encodedValues) {
+            blackhole.consume(codex.decode(DataType.MEMO, value));
+        }
+    }
+}
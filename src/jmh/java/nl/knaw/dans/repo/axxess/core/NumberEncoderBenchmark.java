@@ -0,0 +1,99 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import com.healthmarketscience.jackcess.DataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends {@link DataType#DOUBLE} and {@link DataType#MONEY} values to a {@link StringBuilder} through their
+ * <code>toString()</code>, the way they reached the csv before, and through the encoders of {@link DefaultCodex}.
+ * Half of the doubles have many digits, half have two decimals. Money values are made for every call, as they
+ * are read from a table, because a {@link BigDecimal} keeps its string once made.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumberEncoderBenchmark {
+
+    private static final int VALUE_COUNT = 1000000;
+    private static final int MONEY_SCALE = 4;
+
+    private final StringBuilder out = new StringBuilder();
+    private Codex.Encoder doubleEncoder;
+    private Codex.Encoder moneyEncoder;
+    private double[] doubles;
+    private long[] unscaledMoney;
+
+    @Setup
+    public void setUp() {
+        DefaultCodex codex = new DefaultCodex(null);
+        doubleEncoder = codex.getEncoder(DataType.DOUBLE);
+        moneyEncoder = codex.getEncoder(DataType.MONEY);
+        Random random = new Random(7);
+        doubles = new double[VALUE_COUNT];
+        unscaledMoney = new long[VALUE_COUNT];
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            doubles[i] = i % 2 == 0 ? random.nextDouble() * 1000 : Math.round(random.nextDouble() * 1e6) / 100.0;
+            unscaledMoney[i] = random.nextLong() % 10000000000L;
+        }
+    }
+
+    @Benchmark
+    public int doubleToString() {
+        int length = 0;
+        for (double value : doubles) {
+            out.setLength(0);
+            out.append(value);
+            length += out.length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int doubleEncoder() {
+        int length = 0;
+        for (double value : doubles) {
+            out.setLength(0);
+            doubleEncoder.encode(value, out);
+            length += out.length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int moneyToString() {
+        int length = 0;
+        for (long unscaled : unscaledMoney) {
+            out.setLength(0);
+            out.append(BigDecimal.valueOf(unscaled, MONEY_SCALE));
+            length += out.length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int moneyEncoder() {
+        int length = 0;
+        for (long unscaled : unscaledMoney) {
+            out.setLength(0);
+            moneyEncoder.encode(BigDecimal.valueOf(unscaled, MONEY_SCALE), out);
+            length += out.length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,96 @@
+package nl.knaw.dans.repo.axxess.impl;
+
+import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Table;
+import com.healthmarketscience.jackcess.TableBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens a database read-only with and without {@link SimpleDatabaseOpener#setMemoryMapped(boolean)} and reads
+ * all rows of all tables. The database is given by the system property <code>bench.db</code>; without it a
+ * database with one table of {@value #ROW_COUNT} rows is created in <code>target/jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappedFileChannelBenchmark {
+
+    private static final int ROW_COUNT = 200000;
+
+    @Param({"false", "true"})
+    private boolean memoryMapped;
+
+    private File database;
+    private SimpleDatabaseOpener opener;
+
+    @Setup
+    public void setUp() throws IOException {
+        String path = System.getProperty("bench.db");
+        database = path == null ? createDatabase(new File("target/jmh/scan.accdb")) : new File(path);
+        opener = new SimpleDatabaseOpener().setMemoryMapped(memoryMapped);
+    }
+
+    @Benchmark
+    public long scan() throws IOException {
+        long cellCount = 0;
+        try (Database db = opener.open(database, true)) {
+            for (String tableName : db.getTableNames()) {
+                for (Row row : db.getTable(tableName)) {
+                    cellCount += row.size();
+                }
+            }
+        }
+        return cellCount;
+    }
+
+    private static File createDatabase(File file) throws IOException {
+        if (file.exists()) {
+            return file;
+        }
+        file.getParentFile().mkdirs();
+        try (Database db = DatabaseBuilder.create(Database.FileFormat.V2010, file)) {
+            Table table = new TableBuilder("scan")
+              .addColumn(new ColumnBuilder("id", DataType.LONG))
+              .addColumn(new ColumnBuilder("name", DataType.TEXT))
+              .addColumn(new ColumnBuilder("amount", DataType.DOUBLE))
+              .addColumn(new ColumnBuilder("note", DataType.MEMO))
+              .toTable(db);
+            Random random = new Random(7);
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = 0; i < ROW_COUNT; i++) {
+                rows.add(new Object[] {i, "Name " + random.nextInt(), random.nextDouble(),
+                  "A note of some length on row " + i});
+                if (rows.size() == 1000) {
+                    table.addRows(rows);
+                    rows.clear();
+                }
+            }
+            table.addRows(rows);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,32 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An {@link ArchiveWriter} writes entries of an archive as they are produced, one entry at a time.
+ *
+ * @see Archiver#openArchive(boolean, File)
+ */
+public interface ArchiveWriter extends Closeable {
+
+    /**
+     * Start a new entry with the given name. The content of the entry is written to the returned channel;
+     * closing the channel ends the entry. Starting a new entry ends the previous one.
+     *
+     * @param name name of the entry
+     * @return channel for the content of the entry
+     * @throws IOException for write errors
+     */
+    WritableByteChannel newEntry(String name) throws IOException;
+
+    /**
+     * Get the archive file that is written.
+     *
+     * @return archive file
+     */
+    File getFile();
+
+}
@@ -20,4 +20,19 @@ public interface Archiver {
      * @throws IOException for write errors
      */
     File archive(List<File> files, boolean compress, File target) throws IOException;
+
+    /**
+     * Open an archive for writing entries while they are being produced, without intermediate files.
+     * The {@link File} of the {@link ArchiveWriter} may have another file extension then the original
+     * <code>target</code> file. The default implementation does not support streaming.
+     *
+     * @param compress use compression or not
+     * @param target   name and location of the target file
+     * @return {@link ArchiveWriter} for the target file
+     * @throws IOException                   for write errors
+     * @throws UnsupportedOperationException if this archiver cannot stream
+     */
+    default ArchiveWriter openArchive(boolean compress, File target) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot stream archives");
+    }
 }
@@ -1,22 +1,37 @@
 package nl.knaw.dans.repo.axxess.acc2csv;
 
-import com.healthmarketscience.jackcess.CryptCodecProvider;
 import com.healthmarketscience.jackcess.Database;
-import com.healthmarketscience.jackcess.DatabaseBuilder;
 import nl.knaw.dans.repo.axxess.core.AxxessException;
+import nl.knaw.dans.repo.axxess.core.Codex;
 import nl.knaw.dans.repo.axxess.core.Converter;
+import nl.knaw.dans.repo.axxess.core.DigestingChannel;
+import nl.knaw.dans.repo.axxess.core.ExtractorDef;
+import nl.knaw.dans.repo.axxess.core.OutputListener;
+import nl.knaw.dans.repo.axxess.impl.SimpleDatabaseOpener;
 import nl.knaw.dans.repo.axxess.impl.SimpleEncodingDetector;
 import nl.knaw.dans.repo.axxess.impl.StaticEncodingDetector;
 import nl.knaw.dans.repo.axxess.impl.ZipArchiver;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Converts ms access databases to csv files.
@@ -30,22 +45,35 @@ public class Axxess2CsvConverter extends Converter<Axxess2CsvConverter> {
 
     private static Logger LOG = LoggerFactory.getLogger(Axxess2CsvConverter.class);
 
-    private final MetadataExtractor metadataWriter;
-    private final TableDataExtractor tableDataWriter;
-
     private EncodingDetector encodingDetector;
     private boolean extractMetadata = true;
     private boolean extractTableData = true;
     private Archiver archiver;
     private boolean archiveResults;
     private boolean compressArchive;
+    private boolean streamArchive;
+    private int parallelism = 1;
+    private int tableParallelism = 1;
+    private int encoderThreads;
+    private int compressionThreads = 1;
+    private long checkpointInterval;
+    private long maxRowsPerPart;
+    private long maxBytesPerPart;
+    private long sidecarThreshold;
+    private int scanPartitions;
+    private TableSelection selection = new TableSelection();
+    private DatabaseOpener databaseOpener;
+    private boolean memoryMapDatabases;
+    private long inMemoryLimit;
+    private String forcedSourceEncoding;
+    private boolean resumeConversion;
+    private ConversionLedger ledger;
+    private String settingsFingerprint;
 
     /**
      * Constructs a new {@link Axxess2CsvConverter}.
      */
     public Axxess2CsvConverter() {
-        metadataWriter = new MetadataExtractor(this);
-        tableDataWriter = new TableDataExtractor(this);
         getCodex().setErrorListener(this);
     }
 
@@ -74,6 +102,7 @@ public class Axxess2CsvConverter extends Converter<Axxess2CsvConverter> {
      * @return this for chaining method calls
      */
     public Axxess2CsvConverter withForceSourceEncoding(String charsetName) {
+        forcedSourceEncoding = charsetName;
         if (charsetName == null || charsetName.isEmpty()) {
             return withEncodingDetector(null);
         } else {
@@ -136,6 +165,155 @@ public class Axxess2CsvConverter extends Converter<Axxess2CsvConverter> {
         return this;
     }
 
+    /**
+     * If {@link #setArchiveResults(boolean)} is set to <code>true</code> determines if results are written
+     * straight into the archive, instead of being written to csv files first and archived afterwards.
+     * No csv files are left behind in the target directory. Tables of one database are then extracted one
+     * after the other. If the {@link Archiver} in use cannot stream, results are archived afterwards.
+     * Default <code>false</code>.
+     *
+     * @param streamArchive <code>true</code> if results should be streamed into the archive.
+     * @return this for chaining method calls
+     * @see #setArchiveResults(boolean)
+     * @see Archiver#openArchive(boolean, File)
+     */
+    public Axxess2CsvConverter setStreamArchive(boolean streamArchive) {
+        this.streamArchive = streamArchive;
+        return this;
+    }
+
+    /**
+     * Save a checkpoint every <code>checkpointInterval</code> rows while extracting a table, so that the extraction
+     * of a large table can be resumed after an interruption. Together with {@link #setResumeConversion(boolean)}
+     * an interrupted conversion then resumes at the last checkpoint of the tables it was extracting, keeping the
+     * tables that were already complete. Not used when streaming to an archive.
+     * Default <code>0</code>, no checkpoints.
+     *
+     * @param checkpointInterval number of rows between checkpoints, <code>0</code> for no checkpoints
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>checkpointInterval</code> is negative
+     * @see TableDataExtractor#withCheckpointInterval(long)
+     */
+    public Axxess2CsvConverter withCheckpointInterval(long checkpointInterval) {
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("Checkpoint interval cannot be negative: " + checkpointInterval);
+        }
+        this.checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    /**
+     * Only extract the tables, columns and rows selected by the given {@link TableSelection}. Metadata then only
+     * describes the selected tables and columns. The selection is shared among workers.
+     * Default is a {@link TableSelection} that selects everything.
+     *
+     * @param selection the {@link TableSelection} to use
+     * @return this for chaining method calls
+     * @see TableDataExtractor#withSelection(TableSelection)
+     * @see MetadataExtractor#withSelection(TableSelection)
+     */
+    public Axxess2CsvConverter withSelection(TableSelection selection) {
+        this.selection = selection == null ? new TableSelection() : selection;
+        return this;
+    }
+
+    /**
+     * Split the data of a table in part files of at most <code>maxRowsPerPart</code> rows each, so that large
+     * tables can be loaded piecemeal and in parallel. Every part starts with the header record; part files are
+     * listed in the manifest and, per table, in the metadata. Tables are then extracted before metadata is written.
+     * Not used when streaming to an archive.
+     * Default <code>0</code>, no limit on the number of rows.
+     *
+     * @param maxRowsPerPart maximum number of rows per part file, <code>0</code> for no limit
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>maxRowsPerPart</code> is negative
+     * @see TableDataExtractor#withMaxRowsPerPart(long)
+     */
+    public Axxess2CsvConverter withMaxRowsPerPart(long maxRowsPerPart) {
+        if (maxRowsPerPart < 0) {
+            throw new IllegalArgumentException("Maximum rows per part cannot be negative: " + maxRowsPerPart);
+        }
+        this.maxRowsPerPart = maxRowsPerPart;
+        return this;
+    }
+
+    /**
+     * Split the data of a table in part files of about <code>maxBytesPerPart</code> bytes each.
+     * Default <code>0</code>, no limit on the size of parts.
+     *
+     * @param maxBytesPerPart maximum size in bytes of a part file, <code>0</code> for no limit
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>maxBytesPerPart</code> is negative
+     * @see #withMaxRowsPerPart(long)
+     * @see TableDataExtractor#withMaxBytesPerPart(long)
+     */
+    public Axxess2CsvConverter withMaxBytesPerPart(long maxBytesPerPart) {
+        if (maxBytesPerPart < 0) {
+            throw new IllegalArgumentException("Maximum bytes per part cannot be negative: " + maxBytesPerPart);
+        }
+        this.maxBytesPerPart = maxBytesPerPart;
+        return this;
+    }
+
+    /**
+     * Write OLE values of more than <code>sidecarThreshold</code> bytes to sidecar files, named after the digest of
+     * their value, instead of Base64 encoded in the csv files. Sidecar files are result files, listed in the manifest
+     * and archived with the csv files. Not used when streaming to an archive.
+     * Default <code>0</code>, all values are written in the csv files.
+     *
+     * @param sidecarThreshold size in bytes above which OLE values are written to sidecar files, <code>0</code> for
+     *                         no sidecar files
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>sidecarThreshold</code> is negative
+     * @see TableDataExtractor#withSidecarThreshold(long)
+     */
+    public Axxess2CsvConverter withSidecarThreshold(long sidecarThreshold) {
+        if (sidecarThreshold < 0) {
+            throw new IllegalArgumentException("Sidecar threshold cannot be negative: " + sidecarThreshold);
+        }
+        this.sidecarThreshold = sidecarThreshold;
+        return this;
+    }
+
+    /**
+     * Extract the rows of tables with a primary key in primary key order, reading a table in up to
+     * <code>scanPartitions</code> key ranges concurrently. Output is then the same from run to run, which makes
+     * csv files comparable.
+     * Default <code>0</code>, rows are extracted in the order of storage.
+     *
+     * @param scanPartitions number of key ranges to read a table in, <code>0</code> for the order of storage
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>scanPartitions</code> is negative
+     * @see TableDataExtractor#withScanPartitions(int)
+     */
+    public Axxess2CsvConverter withScanPartitions(int scanPartitions) {
+        if (scanPartitions < 0) {
+            throw new IllegalArgumentException("Number of scan partitions cannot be negative: " + scanPartitions);
+        }
+        this.scanPartitions = scanPartitions;
+        return this;
+    }
+
+    /**
+     * If {@link #setCompressArchive(boolean)} is set to <code>true</code> determines the number of threads
+     * the default {@link ZipArchiver} of each worker compresses with. Has no effect on an {@link Archiver}
+     * set with {@link #withArchiver(Archiver)}.
+     * Default <code>1</code>.
+     *
+     * @param compressionThreads number of compression threads per archive, at least 1
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>compressionThreads</code> is less than 1
+     * @see ZipArchiver#withCompressionThreads(int)
+     */
+    public Axxess2CsvConverter withCompressionThreads(int compressionThreads) {
+        if (compressionThreads < 1) {
+            throw new IllegalArgumentException("Number of compression threads should be at least 1, not "
+              + compressionThreads);
+        }
+        this.compressionThreads = compressionThreads;
+        return this;
+    }
+
     /**
      * Use the given {@link Archiver} when archiving result files.
      * Default archiver is {@link ZipArchiver}.
@@ -150,6 +328,134 @@ public class Axxess2CsvConverter extends Converter<Axxess2CsvConverter> {
         return this;
     }
 
+    /**
+     * Convert up to <code>parallelism</code> databases at the same time. Each worker thread uses its own
+     * extractors and a copy of the {@link Codex} in use (see {@link Codex#copy()}); with a {@link Codex} that cannot
+     * be copied, databases are converted one after the other. An {@link EncodingDetector}
+     * or {@link Archiver} set on this converter is shared among workers and should be thread-safe.
+     * The order of result files is the same as with sequential conversion.
+     * Default <code>1</code>, i.e. databases are converted one after the other.
+     *
+     * @param parallelism number of databases to convert concurrently, at least 1
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>parallelism</code> is less than 1
+     */
+    public Axxess2CsvConverter withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism should be at least 1, not " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Get the number of databases that are converted concurrently.
+     *
+     * @return number of databases converted concurrently
+     * @see #withParallelism(int)
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Extract up to <code>tableParallelism</code> tables of one database at the same time, each on its own
+     * read-only handle of the database file.
+     * Default <code>1</code>.
+     *
+     * @param tableParallelism number of tables to extract concurrently, at least 1
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>tableParallelism</code> is less than 1
+     * @see TableDataExtractor#withParallelism(int)
+     */
+    public Axxess2CsvConverter withTableParallelism(int tableParallelism) {
+        if (tableParallelism < 1) {
+            throw new IllegalArgumentException("Table parallelism should be at least 1, not " + tableParallelism);
+        }
+        this.tableParallelism = tableParallelism;
+        return this;
+    }
+
+    /**
+     * Encode table values on <code>encoderThreads</code> threads, while other threads read rows and write csv.
+     * Default <code>0</code>, no pipelining.
+     *
+     * @param encoderThreads number of encoder threads per table, <code>0</code> to switch off pipelining
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>encoderThreads</code> is negative
+     * @see TableDataExtractor#withEncoderThreads(int)
+     */
+    public Axxess2CsvConverter withEncoderThreads(int encoderThreads) {
+        if (encoderThreads < 0) {
+            throw new IllegalArgumentException("Number of encoder threads cannot be negative: " + encoderThreads);
+        }
+        this.encoderThreads = encoderThreads;
+        return this;
+    }
+
+    /**
+     * Use the given {@link DatabaseOpener} for opening source databases.
+     * Default is {@link SimpleDatabaseOpener}.
+     *
+     * @param databaseOpener {@link DatabaseOpener} to use
+     * @return this for chaining method calls
+     */
+    public Axxess2CsvConverter withDatabaseOpener(DatabaseOpener databaseOpener) {
+        this.databaseOpener = databaseOpener;
+        return this;
+    }
+
+    /**
+     * Open source databases read-only, through a memory-mapped channel. Jackcess then reads pages from mapped
+     * memory instead of with a system call per page, which pays off when scanning large tables, certainly on
+     * network storage. Only the default {@link SimpleDatabaseOpener} maps databases; other openers are asked
+     * for read-only databases.
+     * Default <code>false</code>.
+     *
+     * @param memoryMapDatabases <code>true</code> if source databases should be memory-mapped
+     * @return this for chaining method calls
+     * @see SimpleDatabaseOpener#setMemoryMapped(boolean)
+     */
+    public Axxess2CsvConverter setMemoryMapDatabases(boolean memoryMapDatabases) {
+        this.memoryMapDatabases = memoryMapDatabases;
+        return this;
+    }
+
+    /**
+     * Read source databases of up to <code>inMemoryLimit</code> bytes into memory with one sequential read, and
+     * open them read-only on that copy. Larger databases are opened as usual, or memory-mapped if
+     * {@link #setMemoryMapDatabases(boolean)} is set. Each read-only handle used for table parallelism holds its
+     * own copy. Only the default {@link SimpleDatabaseOpener} reads databases into memory.
+     * Default <code>0</code>, databases are never read into memory.
+     *
+     * @param inMemoryLimit maximum size in bytes of a database read into memory, 0 to never read into memory
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>inMemoryLimit</code> is negative
+     * @see SimpleDatabaseOpener#withInMemoryLimit(long)
+     */
+    public Axxess2CsvConverter withInMemoryLimit(long inMemoryLimit) {
+        if (inMemoryLimit < 0) {
+            throw new IllegalArgumentException("In-memory limit cannot be negative: " + inMemoryLimit);
+        }
+        this.inMemoryLimit = inMemoryLimit;
+        return this;
+    }
+
+    /**
+     * Keep a ledger of converted databases in the target directory, so that an interrupted conversion can be
+     * resumed by converting again. Databases that were converted completely, with the same settings, are skipped;
+     * their earlier result files are returned. Databases that were converted partially, or whose size or
+     * modification time changed since, have their earlier output files deleted and are converted again.
+     * Default <code>false</code>.
+     *
+     * @param resumeConversion <code>true</code> if conversions should be recorded in, and resumed from, a ledger
+     * @return this for chaining method calls
+     */
+    public Axxess2CsvConverter setResumeConversion(boolean resumeConversion) {
+        this.resumeConversion = resumeConversion;
+        return this;
+    }
+
     @Override
     public String getDefaultOutputDirectory() {
         return DEFAULT_OUTPUT_DIRECTORY;
@@ -159,17 +465,67 @@ public class Axxess2CsvConverter extends Converter<Axxess2CsvConverter> {
     public List<File> convert(File file) throws AxxessException {
         reset();
         List<File> resultFiles = new ArrayList<>();
+        List<File[]> jobs = new ArrayList<>();
+        collect(file.getAbsoluteFile(), getTargetDirectory(), jobs, false);
+        openLedger();
         try {
-            convert(file.getAbsoluteFile(), getTargetDirectory(), resultFiles, false);
-            System.out.println();
-        } catch (IOException e) {
-            throw new AxxessException("Exception during conversion of " + file.getAbsolutePath(), e);
+            boolean parallel = parallelism > 1 && jobs.size() > 1;
+            if (parallel && canCopy(getCodex())) {
+                convertParallel(jobs, resultFiles);
+            } else {
+                if (parallel) {
+                    LOG.warn("Codex {} cannot be copied, converting databases one after the other",
+                      getCodex().getClass().getName());
+                }
+                DatabaseWorker worker = new DatabaseWorker(getCodex(), getEncodingDetector(), getArchiver());
+                for (File[] job : jobs) {
+                    resultFiles.addAll(worker.convert(job[0], job[1]));
+                }
+            }
+        } finally {
+            closeLedger();
         }
+        System.out.println();
         return resultFiles;
     }
 
-    private void convert(File file, File targetDirectory, List<File> resultFiles, boolean updateTarget)
-      throws IOException, AxxessException {
+    private void openLedger() throws AxxessException {
+        if (!resumeConversion) {
+            return;
+        }
+        try {
+            ledger = new ConversionLedger(getTargetDirectory(), getFilenameComposer());
+        } catch (IOException e) {
+            throw new AxxessException("Cannot open ledger in " + getTargetDirectory().getAbsolutePath(), e);
+        }
+        settingsFingerprint = computeSettingsFingerprint();
+        LOG.info("Resuming conversion from {}", ledger.getFile().getAbsolutePath());
+    }
+
+    private void closeLedger() {
+        if (ledger != null) {
+            try {
+                ledger.close();
+            } catch (IOException e) {
+                LOG.warn("Could not close ledger {}", ledger.getFile().getAbsolutePath(), e);
+            }
+            ledger = null;
+        }
+    }
+
+    // settings that change the result files of a conversion
+    private String computeSettingsFingerprint() {
+        return DigestUtils.sha1Hex(String.join("|", getTargetCharset().name(), getCSVFormat().toString(),
+          getCodex().getFingerprint(), getFilenameComposer().getClass().getName(),
+          encodingDetector == null ? "" : encodingDetector.getClass().getName(), String.valueOf(forcedSourceEncoding),
+          String.valueOf(extractMetadata), String.valueOf(extractTableData), String.valueOf(isIncludingManifest()),
+          String.valueOf(archiveResults), String.valueOf(compressArchive), String.valueOf(streamArchive),
+          archiver == null ? "" : archiver.getClass().getName(), String.valueOf(maxRowsPerPart),
+          String.valueOf(maxBytesPerPart), String.valueOf(scanPartitions > 0), selection.toString(),
+          String.valueOf(sidecarThreshold)));
+    }
+
+    private void collect(File file, File targetDirectory, List<File[]> jobs, boolean updateTarget) {
         if (!file.exists()) {
             LOG.warn("File not found: {}", file);
             return;
@@ -183,81 +539,72 @@ public class Axxess2CsvConverter extends Converter<Axxess2CsvConverter> {
                 return;
             }
             for (File f : files) {
-                convert(f, targetDirectory, resultFiles, true);
+                collect(f, targetDirectory, jobs, true);
             }
         } else if (isAccessFile(file)) {
-            try {
-                resultFiles.addAll(doConvert(file, targetDirectory));
-            } catch (Exception e) {
-                LOG.error("While converting: " + file.getAbsolutePath(), e);
-                reportError(file, "Fatal error", e);
-                if (e instanceof AxxessException) {
-                    throw e;
-                }
-            }
+            jobs.add(new File[] {file, targetDirectory});
         } else {
             LOG.debug("File is not an access file: {}", file);
         }
     }
 
-    private List<File> doConvert(File file, File targetDirectory) throws IOException, AxxessException {
-        getCodex().setCurrentFile(file);
-        List<File> resultFiles = new ArrayList<>();
-        List<File> csvFiles = new ArrayList<>();
-        LOG.info("Trying to convert {}", file.getAbsolutePath());
-        Database db = null;
+    private void convertParallel(List<File[]> jobs, List<File> resultFiles) throws AxxessException {
+        int poolSize = Math.min(parallelism, jobs.size());
+        LOG.info("Converting {} databases with {} workers", jobs.size(), poolSize);
+        BlockingQueue<DatabaseWorker> workers = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            workers.add(new DatabaseWorker(getCodex().copy(), newEncodingDetector(), newArchiver()));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
         try {
-            db = new DatabaseBuilder(file)
-              .setCodecProvider(new CryptCodecProvider())
-              .open();
-            Optional<Charset> maybeCharset = getEncoding(db);
-            if (maybeCharset.isPresent()) {
-                LOG.info("Setting encoding to '{}' for '{}'", maybeCharset.get(), db.getFile());
-                db.setCharset(maybeCharset.get());
+            List<Future<List<File>>> futures = new ArrayList<>();
+            for (File[] job : jobs) {
+                futures.add(executor.submit(() -> {
+                    DatabaseWorker worker = workers.take();
+                    try {
+                        return worker.convert(job[0], job[1]);
+                    } finally {
+                        workers.put(worker);
+                    }
+                }));
             }
-            if (extractMetadata) {
-                metadataWriter.setExtractorDef(getExtractorDef().copy());
-                metadataWriter.withTargetDirectory(targetDirectory);
-                File mdFile = metadataWriter.writeDatabaseMetadata(db);
-                csvFiles.add(mdFile);
+            // collect in submission order, so the result list does not depend on scheduling
+            for (Future<List<File>> future : futures) {
+                resultFiles.addAll(future.get());
             }
-            if (extractTableData) {
-                tableDataWriter.setExtractorDef(getExtractorDef().copy());
-                tableDataWriter.withTargetDirectory(targetDirectory);
-                List<File> tableFiles = tableDataWriter.writeDatabaseData(db);
-                csvFiles.addAll(tableFiles);
-            }
-            LOG.info("Converted {} to {}", file.getName(), targetDirectory.getAbsolutePath());
-
-            if (isIncludingManifest()) {
-                addManifest(csvFiles);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AxxessException) {
+                throw (AxxessException) e.getCause();
             }
-
-            if (archiveResults) {
-                File targetFile =
-                  new File(targetDirectory, getFilenameComposer().getArchiveFilename(db));
-                File archived = getArchiver().archive(csvFiles, compressArchive, targetFile);
-                LOG.info("Archived {} to {}", file.getName(), archived.getAbsolutePath());
-                resultFiles.add(archived);
-            } else {
-                resultFiles = csvFiles;
-            }
-            increaseDbCount();
-            System.out.print("\r" + getDatabaseCount() + " " + file.getName() + "                                    ");
-            return resultFiles;
+            throw new AxxessException("Exception during parallel conversion", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AxxessException("Interrupted during parallel conversion", e);
         } finally {
-            if (db != null) {
-                db.close();
-            }
+            executor.shutdownNow();
         }
     }
 
-    private Optional<Charset> getEncoding(Database db) throws IOException {
+    private EncodingDetector getEncodingDetector() {
         if (encodingDetector == null) {
             encodingDetector = new SimpleEncodingDetector();
             LOG.debug("Using EncodingDetector {}", encodingDetector);
         }
-        return encodingDetector.detectEncoding(db);
+        return encodingDetector;
+    }
+
+    private EncodingDetector newEncodingDetector() {
+        // the default detector keeps state, a detector set by the user is shared among workers
+        return encodingDetector == null ? new SimpleEncodingDetector() : encodingDetector;
+    }
+
+    private DatabaseOpener getDatabaseOpener() {
+        if (databaseOpener == null) {
+            databaseOpener = new SimpleDatabaseOpener()
+              .setMemoryMapped(memoryMapDatabases)
+              .withInMemoryLimit(inMemoryLimit);
+        }
+        return databaseOpener;
     }
 
     private boolean isAccessFile(File file) {
@@ -271,10 +618,259 @@ public class Axxess2CsvConverter extends Converter<Axxess2CsvConverter> {
 
     private Archiver getArchiver() {
         if (archiver == null) {
-            archiver = new ZipArchiver();
+            archiver = new ZipArchiver().withCompressionThreads(compressionThreads);
         }
         return archiver;
     }
 
+    private Archiver newArchiver() {
+        // the default archiver keeps state, an archiver set by the user is shared among workers
+        return archiver == null ? new ZipArchiver().withCompressionThreads(compressionThreads) : archiver;
+    }
+
+    /**
+     * Converts databases one at a time. Each worker thread has its own extractors and {@link Codex},
+     * results, errors and warnings are reported to the enclosing converter.
+     */
+    private class DatabaseWorker {
+
+        private final MetadataExtractor metadataWriter;
+        private final TableDataExtractor tableDataWriter;
+        private final Codex codex;
+        private final EncodingDetector detector;
+        private final Archiver zipper;
+
+        private DatabaseWorker(Codex codex, EncodingDetector detector, Archiver zipper) {
+            this.codex = codex;
+            this.detector = detector;
+            this.zipper = zipper;
+            metadataWriter = new MetadataExtractor(Axxess2CsvConverter.this);
+            tableDataWriter = new TableDataExtractor(Axxess2CsvConverter.this);
+        }
+
+        private List<File> convert(File file, File targetDirectory) throws AxxessException {
+            try {
+                return doConvert(file, targetDirectory);
+            } catch (Exception e) {
+                LOG.error("While converting: " + file.getAbsolutePath(), e);
+                reportError(file, "Fatal error", e);
+                if (e instanceof AxxessException) {
+                    throw (AxxessException) e;
+                }
+                return Collections.emptyList();
+            }
+        }
+
+        private List<File> doConvert(File file, File targetDirectory) throws IOException, AxxessException {
+            codex.setCurrentFile(file);
+            List<File> resultFiles = new ArrayList<>();
+            List<File> csvFiles = new ArrayList<>();
+            if (ledger != null) {
+                List<File> earlierResults = ledger.getCompletedResults(file, settingsFingerprint);
+                if (earlierResults != null) {
+                    LOG.info("Skipping {}, converted before", file.getAbsolutePath());
+                    return earlierResults;
+                }
+                ledger.start(file, settingsFingerprint);
+            }
+            OutputListener outputListener = ledger == null ? null : output -> ledger.addOutput(file, output);
+            LOG.info("Trying to convert {}", file.getAbsolutePath());
+            Database db = null;
+            try {
+                boolean readOnly = memoryMapDatabases || (inMemoryLimit > 0 && file.length() <= inMemoryLimit);
+                db = getDatabaseOpener().open(file, readOnly);
+                Optional<Charset> maybeCharset = detector.detectEncoding(db);
+                if (maybeCharset.isPresent()) {
+                    LOG.info("Setting encoding to '{}' for '{}'", maybeCharset.get(), db.getFile());
+                    db.setCharset(maybeCharset.get());
+                }
+                if (archiveResults && streamArchive) {
+                    ArchiveWriter archive = openArchive(file, db, targetDirectory);
+                    if (archive != null) {
+                        resultFiles.add(streamToArchive(db, archive));
+                        recordDone(file, resultFiles, resultFiles);
+                        LOG.info("Archived {} to {}", file.getName(), archive.getFile().getAbsolutePath());
+                        int count = increaseDbCount();
+                        System.out.print("\r" + count + " " + file.getName() + "                                    ");
+                        return resultFiles;
+                    }
+                }
+                // digests of output files are computed while writing, for the manifest
+                Map<File, String> digests = isIncludingManifest() ? new ConcurrentHashMap<>() : null;
+                if (extractTableData) {
+                    tableDataWriter.setExtractorDef(copyExtractorDef());
+                    tableDataWriter.withTargetDirectory(targetDirectory)
+                                   .withOutputDigests(digests)
+                                   .withOutputListener(outputListener)
+                                   .withParallelism(tableParallelism)
+                                   .withEncoderThreads(encoderThreads)
+                                   .withCheckpointInterval(checkpointInterval)
+                                   .withMaxRowsPerPart(maxRowsPerPart)
+                                   .withMaxBytesPerPart(maxBytesPerPart)
+                                   .withSidecarThreshold(sidecarThreshold)
+                                   .withScanPartitions(scanPartitions)
+                                   .withSelection(selection)
+                                   .withDatabaseOpener(getDatabaseOpener());
+                }
+                // part files are listed in the metadata, so tables written in parts are extracted first
+                boolean tablesFirst = extractTableData && tableDataWriter.isWritingParts();
+                List<File> tableFiles = Collections.emptyList();
+                if (tablesFirst) {
+                    tableFiles = tableDataWriter.writeDatabaseData(db);
+                }
+                if (extractMetadata) {
+                    metadataWriter.setExtractorDef(copyExtractorDef());
+                    metadataWriter.withOutputDigests(digests);
+                    metadataWriter.withOutputListener(outputListener);
+                    metadataWriter.withTargetDirectory(targetDirectory);
+                    metadataWriter.withSelection(selection);
+                    metadataWriter.withPartFiles(tablesFirst ? tableDataWriter.getPartFiles() : null);
+                    File mdFile = metadataWriter.writeDatabaseMetadata(db);
+                    csvFiles.add(mdFile);
+                }
+                if (extractTableData && !tablesFirst) {
+                    tableFiles = tableDataWriter.writeDatabaseData(db);
+                }
+                csvFiles.addAll(tableFiles);
+                LOG.info("Converted {} to {}", file.getName(), targetDirectory.getAbsolutePath());
+
+                if (isIncludingManifest()) {
+                    addManifest(csvFiles, digests);
+                }
+
+                if (archiveResults) {
+                    File targetFile =
+                      new File(targetDirectory, getFilenameComposer().getArchiveFilename(db));
+                    recordOutput(file, targetFile);
+                    File archived = zipper.archive(csvFiles, compressArchive, targetFile);
+                    LOG.info("Archived {} to {}", file.getName(), archived.getAbsolutePath());
+                    resultFiles.add(archived);
+                } else {
+                    resultFiles = csvFiles;
+                }
+                recordDone(file, csvFiles, resultFiles);
+                int count = increaseDbCount();
+                System.out.print("\r" + count + " " + file.getName() + "                                    ");
+                return resultFiles;
+            } finally {
+                if (db != null) {
+                    db.close();
+                }
+            }
+        }
+
+        // an archive is recorded before its entries are written, so that a partial archive is deleted on resume
+        private void recordOutput(File file, File output) throws IOException {
+            if (ledger != null) {
+                ledger.addOutput(file, output);
+            }
+        }
+
+        private void recordDone(File file, List<File> outputFiles, List<File> resultFiles) throws IOException {
+            if (ledger != null) {
+                for (File output : outputFiles) {
+                    ledger.addOutput(file, output);
+                }
+                ledger.done(file, resultFiles);
+            }
+        }
+
+        private ArchiveWriter openArchive(File file, Database db, File targetDirectory) throws IOException {
+            File targetFile = new File(targetDirectory, getFilenameComposer().getArchiveFilename(db));
+            targetDirectory.mkdirs();
+            try {
+                ArchiveWriter archive = zipper.openArchive(compressArchive, targetFile);
+                try {
+                    recordOutput(file, archive.getFile());
+                } catch (IOException e) {
+                    archive.close();
+                    throw e;
+                }
+                return archive;
+            } catch (UnsupportedOperationException e) {
+                LOG.warn("Cannot stream to archive, archiving afterwards: {}", e.getMessage());
+                return null;
+            }
+        }
+
+        private File streamToArchive(Database db, ArchiveWriter archive) throws IOException, AxxessException {
+            try (ManifestingArchiveWriter out = new ManifestingArchiveWriter(archive, isIncludingManifest())) {
+                if (extractMetadata) {
+                    metadataWriter.setExtractorDef(copyExtractorDef());
+                    metadataWriter.withPartFiles(null);
+                    metadataWriter.withSelection(selection);
+                    metadataWriter.writeDatabaseMetadata(db, out);
+                }
+                if (extractTableData) {
+                    tableDataWriter.setExtractorDef(copyExtractorDef());
+                    tableDataWriter.withEncoderThreads(encoderThreads);
+                    tableDataWriter.withScanPartitions(scanPartitions);
+                    tableDataWriter.withSelection(selection);
+                    tableDataWriter.writeDatabaseData(db, out);
+                }
+                if (isIncludingManifest() && !out.getDigests().isEmpty()) {
+                    writeManifest(out.getDigests(), archive.newEntry(MANIFEST_FILENAME));
+                }
+            }
+            return archive.getFile();
+        }
+
+        private ExtractorDef copyExtractorDef() {
+            ExtractorDef def = getExtractorDef().copy();
+            def.setCodex(codex);
+            return def;
+        }
+    }
+
+    /**
+     * Passes entries on to an {@link ArchiveWriter}, collecting their sha1 digests if a manifest is wanted.
+     */
+    private static class ManifestingArchiveWriter implements ArchiveWriter {
+
+        private final ArchiveWriter archive;
+        private final boolean digesting;
+        private final Map<String, String> digests = new LinkedHashMap<>();
+        private String currentName;
+        private DigestingChannel current;
+
+        private ManifestingArchiveWriter(ArchiveWriter archive, boolean digesting) {
+            this.archive = archive;
+            this.digesting = digesting;
+        }
+
+        @Override
+        public WritableByteChannel newEntry(String name) throws IOException {
+            collectDigest();
+            WritableByteChannel channel = archive.newEntry(name);
+            if (!digesting) {
+                return channel;
+            }
+            currentName = name;
+            current = new DigestingChannel(channel, DigestUtils.getSha1Digest());
+            return current;
+        }
+
+        @Override
+        public File getFile() {
+            return archive.getFile();
+        }
 
+        private Map<String, String> getDigests() throws IOException {
+            collectDigest();
+            return digests;
+        }
+
+        private void collectDigest() throws IOException {
+            if (current != null) {
+                current.close();
+                digests.put(currentName, current.getHexDigest());
+                current = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            archive.close();
+        }
+    }
 }
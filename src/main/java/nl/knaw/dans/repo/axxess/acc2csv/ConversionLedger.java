@@ -0,0 +1,295 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import nl.knaw.dans.repo.axxess.core.FilenameComposer;
+import nl.knaw.dans.repo.axxess.core.SidecarStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps track of converted databases in a journal in the target directory, so that an interrupted conversion
+ * can be resumed. Records are appended and forced to disk before the work they describe: a database is started,
+ * each output file is reported before it is written and a database is done, with its result files, after its
+ * last output file is closed. Every line carries a checksum, a line torn by a crash is ignored. On opening,
+ * the journal is compacted into a temporary file that atomically replaces it.
+ * <p>
+ * A database that is done is skipped as long as its size and modification time and the fingerprint of the
+ * conversion settings are unchanged, and its result files still exist. Otherwise the output files recorded for it
+ * are deleted before it is converted again. Databases are not read by the ledger: a database that was touched,
+ * but not changed, is converted again.
+ */
+class ConversionLedger implements Closeable {
+
+    static final String LEDGER_FILENAME = "axxess-ledger.txt";
+
+    private static final String START = "START";
+    private static final String OUTPUT = "OUTPUT";
+    private static final String DONE = "DONE";
+
+    private static Logger LOG = LoggerFactory.getLogger(ConversionLedger.class);
+
+    private final File file;
+    private final FilenameComposer composer;
+    private final Map<String, Record> records = new LinkedHashMap<>();
+    private FileChannel journal;
+
+    ConversionLedger(File directory, FilenameComposer composer) throws IOException {
+        this.composer = composer;
+        directory.mkdirs();
+        file = new File(directory, LEDGER_FILENAME);
+        if (file.exists()) {
+            load();
+        }
+        compact();
+        journal = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the result files of an earlier conversion of the given source, if it is still valid.
+     *
+     * @param source      the source database
+     * @param fingerprint fingerprint of the current conversion settings
+     * @return result files of the earlier conversion, or <code>null</code> if the source should be converted
+     */
+    synchronized List<File> getCompletedResults(File source, String fingerprint) {
+        Record record = records.get(source.getAbsolutePath());
+        if (record == null || !record.done || !record.fingerprint.equals(fingerprint) || !record.isOf(source)) {
+            return null;
+        }
+        List<File> results = new ArrayList<>();
+        for (String result : record.results) {
+            File resultFile = new File(result);
+            if (!resultFile.exists()) {
+                return null;
+            }
+            results.add(resultFile);
+        }
+        return results;
+    }
+
+    /**
+     * Record the start of the conversion of the given source. Output files of an earlier, partial or outdated
+     * conversion of the source are deleted first. Output files with a {@link TableCheckpoint} are kept if neither
+     * the source nor the settings changed, so that their extraction can be resumed. Sidecar files are then kept as
+     * well, the rows before a checkpoint can refer to them.
+     *
+     * @param source      the source database
+     * @param fingerprint fingerprint of the current conversion settings
+     * @throws IOException for read or write errors
+     */
+    synchronized void start(File source, String fingerprint) throws IOException {
+        String key = source.getAbsolutePath();
+        Record record = new Record(source.length(), source.lastModified(), fingerprint);
+        Record earlier = records.get(key);
+        boolean resumable = earlier != null && earlier.isOf(source) && earlier.fingerprint.equals(fingerprint);
+        if (earlier != null) {
+            for (String output : earlier.outputs) {
+                File checkpoint = TableCheckpoint.fileFor(new File(output));
+                if (resumable && (checkpoint.exists() || SidecarStore.isSidecarFile(new File(output), composer))) {
+                    record.outputs.add(output);
+                    continue;
+                }
+                if (Files.deleteIfExists(new File(output).toPath())) {
+                    LOG.info("Deleted output of earlier conversion: {}", output);
+                }
+                Files.deleteIfExists(checkpoint.toPath());
+            }
+        }
+        records.put(key, record);
+        append(START, key, Long.toString(record.size), Long.toString(record.lastModified), record.fingerprint);
+        for (String output : record.outputs) {
+            append(OUTPUT, key, output);
+        }
+    }
+
+    synchronized void addOutput(File source, File output) throws IOException {
+        String key = source.getAbsolutePath();
+        String outputPath = output.getAbsolutePath();
+        if (records.get(key).outputs.add(outputPath)) {
+            append(OUTPUT, key, outputPath);
+        }
+    }
+
+    synchronized void done(File source, List<File> results) throws IOException {
+        String key = source.getAbsolutePath();
+        List<String> fields = new ArrayList<>();
+        fields.add(DONE);
+        fields.add(key);
+        for (File result : results) {
+            addOutput(source, result);
+            fields.add(result.getAbsolutePath());
+        }
+        Record record = records.get(key);
+        record.results.addAll(fields.subList(2, fields.size()));
+        record.done = true;
+        append(fields.toArray(new String[0]));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private void load() throws IOException {
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        int start = 0;
+        int end;
+        // a last line without line separator was torn while being written
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            String line = content.substring(start, end);
+            start = end + 1;
+            String[] fields = parse(line);
+            if (fields == null) {
+                LOG.warn("Ignoring corrupt line in {}: {}", file.getName(), line);
+                continue;
+            }
+            apply(fields);
+        }
+    }
+
+    private void apply(String[] fields) {
+        if (START.equals(fields[0]) && fields.length == 5) {
+            records.put(fields[1], new Record(Long.parseLong(fields[2]), Long.parseLong(fields[3]), fields[4]));
+            return;
+        }
+        Record record = records.get(fields[1]);
+        if (record == null) {
+            LOG.warn("Ignoring {} record without start in {}: {}", fields[0], file.getName(), fields[1]);
+        } else if (OUTPUT.equals(fields[0]) && fields.length == 3) {
+            record.outputs.add(fields[2]);
+        } else if (DONE.equals(fields[0])) {
+            record.results.addAll(Arrays.asList(fields).subList(2, fields.length));
+            record.done = true;
+        }
+    }
+
+    private void compact() throws IOException {
+        File temp = new File(file.getParentFile(), LEDGER_FILENAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Map.Entry<String, Record> entry : records.entrySet()) {
+                Record record = entry.getValue();
+                write(channel, START, entry.getKey(), Long.toString(record.size),
+                  Long.toString(record.lastModified), record.fingerprint);
+                for (String output : record.outputs) {
+                    write(channel, OUTPUT, entry.getKey(), output);
+                }
+                if (record.done) {
+                    List<String> fields = new ArrayList<>(Arrays.asList(DONE, entry.getKey()));
+                    fields.addAll(record.results);
+                    write(channel, fields.toArray(new String[0]));
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void append(String... fields) throws IOException {
+        write(journal, fields);
+        journal.force(false);
+    }
+
+    private static void write(FileChannel channel, String... fields) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String field : fields) {
+            if (sb.length() > 0) {
+                sb.append('\t');
+            }
+            sb.append(escape(field));
+        }
+        String line = sb.toString();
+        ByteBuffer buffer = ByteBuffer.wrap(
+          (line + '\t' + Long.toHexString(checksum(line)) + '\n').getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static String[] parse(String line) {
+        int split = line.lastIndexOf('\t');
+        if (split < 0 || !line.substring(split + 1).equals(Long.toHexString(checksum(line.substring(0, split))))) {
+            return null;
+        }
+        String[] fields = line.substring(0, split).split("\t", -1);
+        if (fields.length < 2) {
+            return null;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = unescape(fields[i]);
+        }
+        return fields;
+    }
+
+    private static long checksum(String line) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(line.getBytes(StandardCharsets.UTF_8));
+        return crc32.getValue();
+    }
+
+    private static String escape(String field) {
+        return field.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String field) {
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder sb = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 1 < field.length()) {
+                char next = field.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class Record {
+
+        private final long size;
+        private final long lastModified;
+        private final String fingerprint;
+        private final Set<String> outputs = new LinkedHashSet<>();
+        private final List<String> results = new ArrayList<>();
+        private boolean done;
+
+        private Record(long size, long lastModified, String fingerprint) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fingerprint = fingerprint;
+        }
+
+        private boolean isOf(File source) {
+            return size == source.length() && lastModified == source.lastModified();
+        }
+    }
+}
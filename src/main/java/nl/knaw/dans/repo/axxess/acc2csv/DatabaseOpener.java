@@ -0,0 +1,24 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import com.healthmarketscience.jackcess.Database;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A {@link DatabaseOpener} opens ms access databases for conversion. Implementations should be thread-safe:
+ * several handles on the same file may be opened concurrently.
+ */
+public interface DatabaseOpener {
+
+    /**
+     * Open the database in the given file.
+     *
+     * @param file     the database file
+     * @param readOnly <code>true</code> if the database should be opened read-only
+     * @return the opened {@link Database}
+     * @throws IOException for read errors
+     */
+    Database open(File file, boolean readOnly) throws IOException;
+
+}
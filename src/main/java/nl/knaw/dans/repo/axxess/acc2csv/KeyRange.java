@@ -0,0 +1,116 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.CursorBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Index;
+import com.healthmarketscience.jackcess.IndexCursor;
+import com.healthmarketscience.jackcess.Table;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A range of primary key values of a table, from inclusive to exclusive. A primary key on one ascending column of
+ * type INT or LONG is split into ranges of about equal width between its lowest and highest value; other primary
+ * keys give one range that covers the whole table. Ranges are given by index name and key values, so that a
+ * range can be read from any handle on the database.
+ */
+class KeyRange {
+
+    private final String indexName;
+    private final Object from;
+    private final Object to;
+
+    private KeyRange(String indexName, Object from, Object to) {
+        this.indexName = indexName;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Get the primary key index of the given table.
+     *
+     * @param table the table
+     * @return the primary key index, or <code>null</code> if the table has no primary key
+     */
+    static Index getPrimaryKey(Table table) {
+        for (Index index : table.getIndexes()) {
+            if (index.isPrimaryKey()) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Split the given primary key in at most <code>count</code> consecutive ranges.
+     *
+     * @param primaryKey the primary key index
+     * @param count      maximum number of ranges
+     * @return consecutive ranges that together cover the table
+     * @throws IOException for read errors
+     */
+    static List<KeyRange> split(Index primaryKey, int count) throws IOException {
+        KeyRange whole = new KeyRange(primaryKey.getName(), null, null);
+        Index.Column keyColumn = primaryKey.getColumns().get(0);
+        Column column = keyColumn.getColumn();
+        if (count < 2 || primaryKey.getColumnCount() != 1 || !keyColumn.isAscending()
+          || !isIntegral(column.getType())) {
+            return Collections.singletonList(whole);
+        }
+        IndexCursor cursor = CursorBuilder.createCursor(primaryKey);
+        if (!cursor.moveToNextRow()) {
+            return Collections.singletonList(whole);
+        }
+        long min = ((Number) cursor.getCurrentRowValue(column)).longValue();
+        cursor.afterLast();
+        cursor.moveToPreviousRow();
+        long max = ((Number) cursor.getCurrentRowValue(column)).longValue();
+        long width = max - min + 1;
+        int rangeCount = (int) Math.min(count, width);
+        List<KeyRange> ranges = new ArrayList<>();
+        Object previous = null;
+        for (int i = 1; i < rangeCount; i++) {
+            Object bound = toColumnValue(column.getType(), min + width * i / rangeCount);
+            ranges.add(new KeyRange(primaryKey.getName(), previous, bound));
+            previous = bound;
+        }
+        ranges.add(new KeyRange(primaryKey.getName(), previous, null));
+        return ranges;
+    }
+
+    private static boolean isIntegral(DataType type) {
+        // not BYTE: Jackcess reads the unsigned bytes of Access as signed
+        return type == DataType.INT || type == DataType.LONG;
+    }
+
+    private static Object toColumnValue(DataType type, long value) {
+        return type == DataType.INT ? (Object) (short) value : (Object) (int) value;
+    }
+
+    /**
+     * Create a cursor over the rows of this range, in primary key order.
+     *
+     * @param table the table, possibly on another handle than the one this range was split from
+     * @return cursor over the rows of this range
+     * @throws IOException for read errors
+     */
+    IndexCursor newCursor(Table table) throws IOException {
+        CursorBuilder builder = table.newCursor().setIndexByName(indexName);
+        if (from != null) {
+            builder.setStartEntry(from).setStartRowInclusive(true);
+        }
+        if (to != null) {
+            builder.setEndEntry(to).setEndRowInclusive(false);
+        }
+        return builder.toIndexCursor();
+    }
+
+    @Override
+    public String toString() {
+        return indexName + "[" + from + "," + to + ")";
+    }
+}
@@ -18,15 +18,26 @@ import nl.knaw.dans.repo.axxess.core.Extractor;
 import nl.knaw.dans.repo.axxess.core.KeyTypeValueMatrix;
 import nl.knaw.dans.repo.axxess.core.ObjectType;
 import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -35,7 +46,13 @@ import java.util.stream.Collectors;
  */
 public class MetadataExtractor extends Extractor<MetadataExtractor> implements Axxess {
 
+    // size of metadata kept in memory by printMetadata, larger metadata is buffered in a temporary file
+    private static final int METADATA_BUFFER_SIZE = 1024 * 1024;
+
     private List<String> extractionWarnings = new ArrayList<>();
+    private Map<String, List<File>> partFiles = Collections.emptyMap();
+    private TableSelection selection = new TableSelection();
+    private SchemaIndex schema;
 
     public MetadataExtractor() {
     }
@@ -44,6 +61,40 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
         setExternalListener(externalListener);
     }
 
+    /**
+     * List the given part files in the metadata of their tables, under {@link Axxess#TABLE_PART_FILES}.
+     * Part files are listed by name; they are expected in the directory of the metadata file.
+     *
+     * @param partFiles part files by table name, as written by {@link TableDataExtractor#getPartFiles()}
+     * @return this for chaining method calls
+     */
+    public MetadataExtractor withPartFiles(Map<String, List<File>> partFiles) {
+        this.partFiles = partFiles == null ? Collections.emptyMap() : partFiles;
+        return this;
+    }
+
+    /**
+     * Only describe the tables and columns selected by the given {@link TableSelection}, and the indexes and
+     * relationships made up of selected columns.
+     * Default is a {@link TableSelection} that selects everything.
+     *
+     * @param selection the {@link TableSelection} to use
+     * @return this for chaining method calls
+     */
+    public MetadataExtractor withSelection(TableSelection selection) {
+        this.selection = selection == null ? new TableSelection() : selection;
+        schema = null;
+        return this;
+    }
+
+    // relationships, queries and table names are read once per database
+    private SchemaIndex getSchema(Database db) throws IOException {
+        if (schema == null || schema.getDatabase() != db) {
+            schema = new SchemaIndex(db, selection);
+        }
+        return schema;
+    }
+
     private static void appendProperties(KeyTypeValueMatrix matrix, PropertyMap propMap, String keyPrefix,
                                          Codex codex) {
         for (PropertyMap.Property prop : propMap) {
@@ -70,13 +121,33 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
         if (file.exists()) {
             throw new AxxessException("File exists: " + file.getAbsolutePath());
         }
-        try (OutputStreamWriter osw = new OutputStreamWriter(new FileOutputStream(file), getTargetCharset())) {
-            getMetadata(db).printVertical(osw, buildVerticalFormat());
+        try (OutputStreamWriter osw = new OutputStreamWriter(Channels.newOutputStream(openOutputChannel(file)),
+          getTargetCharset())) {
+            printMetadata(db, osw);
             LOG.debug("Wrote metadata: {}", file.getName());
             return file;
         }
     }
 
+    /**
+     * Writes metadata of the given database in vertical orientation as a
+     * <code>n x 4</code> <code>.csv</code> entry of the given archive.
+     *
+     * @param db      the database
+     * @param archive the archive to write to
+     * @return the name of the newly created entry
+     * @throws IOException signals a failure in reading or writing
+     */
+    public String writeDatabaseMetadata(Database db, ArchiveWriter archive) throws IOException {
+        String entryName = getFilenameComposer().getMetadataFilename(db);
+        try (OutputStreamWriter osw = new OutputStreamWriter(Channels.newOutputStream(archive.newEntry(entryName)),
+          getTargetCharset())) {
+            printMetadata(db, osw);
+            LOG.debug("Wrote metadata: {}", entryName);
+            return entryName;
+        }
+    }
+
     private CSVFormat buildVerticalFormat() {
         CSVFormat format = getCSVFormat();
         if (format.getHeader() == null || format.getHeader().length != 3) {
@@ -85,29 +156,77 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
         return format;
     }
 
+    /**
+     * Print metadata of the given {@link Database} in vertical orientation, in the same format as
+     * {@link KeyTypeValueMatrix#printVertical(Appendable, CSVFormat)} prints the result of
+     * {@link #getMetadata(Database)}. Metadata is printed object by object, without building the metadata of
+     * the whole database in memory. Because the warnings of the extraction come first and are only known at
+     * the end, the rest of the metadata is buffered; in a temporary file if it is large.
+     *
+     * @param db  the {@link Database} to be questioned
+     * @param out where to print metadata to
+     * @throws IOException for read or write errors
+     */
+    public void printMetadata(Database db, Appendable out) throws IOException {
+        CSVFormat format = buildVerticalFormat();
+        DeferredFileOutputStream buffer =
+          new DeferredFileOutputStream(METADATA_BUFFER_SIZE, "axxess-metadata", ".csv", null);
+        try {
+            KeyTypeValueMatrix extractionMetadata;
+            try (OutputStreamWriter writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+                CSVPrinter bodyPrinter = new CSVPrinter(writer,
+                  format.withSkipHeaderRecord().withHeaderComments((Object[]) null));
+                extractionMetadata = extractMetadata(db, matrix -> matrix.printVertical(bodyPrinter));
+                bodyPrinter.flush();
+            }
+            CSVPrinter printer = new CSVPrinter(out, format);
+            extractionMetadata.printVertical(printer);
+            printer.flush();
+            try (Reader reader = new InputStreamReader(
+              buffer.isInMemory() ? new ByteArrayInputStream(buffer.getData()) : new FileInputStream(buffer.getFile()),
+              StandardCharsets.UTF_8)) {
+                char[] chars = new char[8192];
+                int count;
+                while ((count = reader.read(chars)) >= 0) {
+                    out.append(CharBuffer.wrap(chars, 0, count));
+                }
+            }
+        } finally {
+            if (!buffer.isInMemory()) {
+                Files.deleteIfExists(buffer.getFile().toPath());
+            }
+        }
+    }
+
     /**
      * Get metadata from the given {@link Database} in a {@link KeyTypeValueMatrix}.
      *
      * @param db the {@link Database} to be questioned
      * @return metadata in a {@link KeyTypeValueMatrix}
      * @throws IOException for read errors
+     * @see #printMetadata(Database, Appendable)
      */
     public KeyTypeValueMatrix getMetadata(Database db) throws IOException {
+        KeyTypeValueMatrix metadata = new KeyTypeValueMatrix();
+        return extractMetadata(db, metadata::append).append(metadata);
+    }
+
+    // sends the metadata of the database to the sink and returns the extraction metadata, that comes first
+    private KeyTypeValueMatrix extractMetadata(Database db, MatrixSink sink) throws IOException {
         extractionWarnings.clear();
+        schema = new SchemaIndex(db, selection);
         KeyTypeValueMatrix currentExtractionMetadata = getExtractionMetadata();
-        KeyTypeValueMatrix databaseMetadata = getDatabaseMetadata(db);
-        KeyTypeValueMatrix relationMetadata = getRelationshipMetadata(db);
-        KeyTypeValueMatrix queryMetadata = getQueryMetadata(db);
-        KeyTypeValueMatrix extendedTableMetadata = getExtendedTableMetadata(db);
-        currentExtractionMetadata
+        try {
+            sink.accept(getDatabaseMetadata(db));
+            sendRelationshipMetadata(db, sink);
+            sendQueryMetadata(db, sink);
+            sendExtendedTableMetadata(db, sink);
+        } finally {
+            schema = null;
+        }
+        return currentExtractionMetadata
           .add(EM_WARNINGS, DataType.COMPLEX_TYPE, getCodex().encodeCollection(extractionWarnings))
           .prefixKeys(ObjectType.EXTRACTION_METADATA);
-
-        return currentExtractionMetadata
-          .append(databaseMetadata)
-          .append(relationMetadata)
-          .append(queryMetadata)
-          .append(extendedTableMetadata);
     }
 
     public KeyTypeValueMatrix getExtractionMetadata() {
@@ -126,13 +245,19 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
     public KeyTypeValueMatrix getDatabaseMetadata(Database db) throws IOException {
         List<String> relationshipNames = new ArrayList<>();
         try {
-            relationshipNames = db.getRelationships().stream().map(Relationship::getName).collect(Collectors.toList());
+            relationshipNames = getSchema(db).getRelationships()
+                                  .stream()
+                                  .filter(selection::isSelected)
+                                  .map(Relationship::getName)
+                                  .collect(Collectors.toList());
         } catch (FileNotFoundException e) {
             LOG.warn("RelationshipNames", e);
             extractionWarnings.add("RelationshipNames: " + " msg:" + e.getMessage());
             reportWarning(db.getFile(), "Error while reading relationships names", e);
         }
-        List<String> queryNames = db.getQueries().stream().map(Query::getName).collect(Collectors.toList());
+        List<String> queryNames =
+          getSchema(db).getQueries().stream().map(Query::getName).collect(Collectors.toList());
+        List<String> tableNames = getSchema(db).getTableNames();
         KeyTypeValueMatrix matrix = new KeyTypeValueMatrix()
           .add(DB_FILENAME, DataType.TEXT, db.getFile().getName())
           .add(DB_PASSWORD, DataType.TEXT, db.getDatabasePassword())
@@ -149,27 +274,30 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
               .add(DB_RELATIONSHIP_NAMES, DataType.COMPLEX_TYPE, getCodex().encodeCollection(relationshipNames))
               .add(DB_QUERY_COUNT, DataType.INT, queryNames.size())
               .add(DB_QUERY_NAMES, DataType.COMPLEX_TYPE, getCodex().encodeCollection(queryNames))
-              .add(DB_TABLE_COUNT, DataType.INT, db.getTableNames().size())
-              .add(DB_TABLE_NAMES, DataType.COMPLEX_TYPE, getCodex().encodeCollection(db.getTableNames()))
+              .add(DB_TABLE_COUNT, DataType.INT, tableNames.size())
+              .add(DB_TABLE_NAMES, DataType.COMPLEX_TYPE, getCodex().encodeCollection(tableNames))
               .prefixKeys(ObjectType.DATABASE);
         return matrix;
     }
 
     public KeyTypeValueMatrix getTableMetadata(Table table, boolean includeDbName) throws IOException {
-        List<String> columnNames = table.getColumns()
-                                        .stream()
-                                        .map(Column::getName)
-                                        .collect(Collectors.toList());
-        List<String> relationshipNames = table.getDatabase().getRelationships(table)
+        List<String> columnNames = selection.getSelectedColumns(table)
+                                            .stream()
+                                            .map(Column::getName)
+                                            .collect(Collectors.toList());
+        List<String> relationshipNames = getSchema(table.getDatabase()).getRelationships(table)
                                               .stream()
+                                              .filter(selection::isSelected)
                                               .map(Relationship::getName)
                                               .collect(Collectors.toList());
         List<String> indexNames = table.getIndexes()
                                        .stream()
+                                       .filter(selection::isSelected)
                                        .map(Index::getName)
                                        .collect(Collectors.toList());
         String primaryKeyIndexName = table.getIndexes()
                                           .stream()
+                                          .filter(selection::isSelected)
                                           .filter(Index::isPrimaryKey)
                                           .map(Index::getName)
                                           .findFirst()
@@ -181,12 +309,17 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
             matrix.add(TABLE_DATABASE_NAME, DataType.TEXT, table.getDatabase().getFile().getName());
         }
         matrix.add(TABLE_ROW_COUNT, DataType.INT, table.getRowCount())
-              .add(TABLE_COLUMN_COUNT, DataType.INT, table.getColumnCount())
+              .add(TABLE_COLUMN_COUNT, DataType.INT, columnNames.size())
               .add(TABLE_COLUMN_NAMES, DataType.COMPLEX_TYPE, getCodex().encodeCollection(columnNames))
               .add(TABLE_IS_ALLOW_AUTO_NUMBER_INSERT, DataType.BOOLEAN, table.isAllowAutoNumberInsert())
               .add(TABLE_RELATIONSHIP_NAMES, DataType.COMPLEX_TYPE, getCodex().encodeCollection(relationshipNames))
               .add(TABLE_INDEX_NAMES, DataType.COMPLEX_TYPE, getCodex().encodeCollection(indexNames))
               .add(TABLE_PRIMARY_KEY_INDEX, DataType.TEXT, primaryKeyIndexName);
+        List<File> parts = partFiles.get(tableName);
+        if (parts != null) {
+            List<String> partNames = parts.stream().map(File::getName).collect(Collectors.toList());
+            matrix.add(TABLE_PART_FILES, DataType.COMPLEX_TYPE, getCodex().encodeCollection(partNames));
+        }
 
         try {
             appendProperties(matrix, table.getProperties(), TABLE_PROP, getCodex());
@@ -200,12 +333,20 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
 
     public KeyTypeValueMatrix getRelationshipMetadata(Database db) throws IOException {
         KeyTypeValueMatrix matrix = new KeyTypeValueMatrix();
+        sendRelationshipMetadata(db, matrix::append);
+        return matrix;
+    }
+
+    private void sendRelationshipMetadata(Database db, MatrixSink sink) throws IOException {
         int relationshipCount = 0;
         try {
-            for (Relationship relationship : db.getRelationships()) {
+            for (Relationship relationship : getSchema(db).getRelationships()) {
+                if (!selection.isSelected(relationship)) {
+                    continue;
+                }
                 KeyTypeValueMatrix relationshipMatrix = getRelationshipMetadata(relationship);
                 relationshipMatrix.prefixKeys(ObjectType.RELATIONSHIP, relationshipCount);
-                matrix.append(relationshipMatrix);
+                sink.accept(relationshipMatrix);
                 ++relationshipCount;
             }
         } catch (FileNotFoundException e) {
@@ -213,7 +354,6 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
             extractionWarnings.add("RelationshipNames" + " msg:" + e.getMessage());
             reportWarning(db.getFile(), "RelationshipNames", e);
         }
-        return matrix;
     }
 
     public KeyTypeValueMatrix getRelationshipMetadata(Relationship relationship) {
@@ -239,14 +379,18 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
 
     public KeyTypeValueMatrix getQueryMetadata(Database db) throws IOException {
         KeyTypeValueMatrix matrix = new KeyTypeValueMatrix();
+        sendQueryMetadata(db, matrix::append);
+        return matrix;
+    }
+
+    private void sendQueryMetadata(Database db, MatrixSink sink) throws IOException {
         int queryCount = 0;
-        for (Query query : db.getQueries()) {
+        for (Query query : getSchema(db).getQueries()) {
             KeyTypeValueMatrix queryMatrix = getQueryMetadata(query, db);
             queryMatrix.prefixKeys(ObjectType.QUERY, queryCount);
-            matrix.append(queryMatrix);
+            sink.accept(queryMatrix);
             ++queryCount;
         }
-        return matrix;
     }
 
     public KeyTypeValueMatrix getQueryMetadata(Query query, Database db) {
@@ -270,9 +414,14 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
 
     public KeyTypeValueMatrix getExtendedTableMetadata(Database db) throws IOException {
         KeyTypeValueMatrix matrix = new KeyTypeValueMatrix();
+        sendExtendedTableMetadata(db, matrix::append);
+        return matrix;
+    }
+
+    private void sendExtendedTableMetadata(Database db, MatrixSink sink) throws IOException {
         int tableCount = 0;
 
-        for (String tableName : db.getTableNames()) {
+        for (String tableName : getSchema(db).getTableNames()) {
             try {
                 Table table = db.getTable(tableName);
                 if (table == null) {
@@ -280,21 +429,24 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
                 }
                 KeyTypeValueMatrix tableMatrix = getTableMetadata(table, false);
                 tableMatrix.prefixKeys(ObjectType.TABLE, tableCount);
-                matrix.append(tableMatrix);
+                sink.accept(tableMatrix);
 
                 int indexCount = 0;
                 for (Index index : table.getIndexes()) {
+                    if (!selection.isSelected(index)) {
+                        continue;
+                    }
                     KeyTypeValueMatrix indexMatrix = getIndexMetadata(index);
                     indexMatrix.prefixKeys(ObjectType.TABLE_INDEX, tableCount, indexCount);
-                    matrix.append(indexMatrix);
+                    sink.accept(indexMatrix);
                     indexCount++;
                 }
 
                 int columnCount = 0;
-                for (Column column : table.getColumns()) {
+                for (Column column : selection.getSelectedColumns(table)) {
                     KeyTypeValueMatrix columnMatrix = getColumnMetadata(column);
                     columnMatrix.prefixKeys(ObjectType.TABLE_COLUMN, tableCount, columnCount);
-                    matrix.append(columnMatrix);
+                    sink.accept(columnMatrix);
                     ++columnCount;
                 }
                 ++tableCount;
@@ -304,7 +456,6 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
                 reportWarning(db.getFile(), "Table: " + tableName, e);
             }
         }
-        return matrix;
     }
 
     public KeyTypeValueMatrix getIndexMetadata(Index index) throws IOException {
@@ -360,4 +511,12 @@ public class MetadataExtractor extends Extractor<MetadataExtractor> implements A
     }
 
 
+    /**
+     * Receives the metadata of one object at a time, with prefixed keys.
+     */
+    private interface MatrixSink {
+
+        void accept(KeyTypeValueMatrix matrix) throws IOException;
+
+    }
 }
@@ -0,0 +1,79 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import nl.knaw.dans.repo.axxess.core.CsvChannelWriter;
+import org.apache.commons.csv.CSVFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Writes the csv records of a table to consecutive part files. The first record is taken as header and starts
+ * every part. A new part is started when the current part holds <code>maxRows</code> records, not counting the
+ * header, or when it has reached <code>maxBytes</code>; a part may therefore exceed <code>maxBytes</code> by
+ * one record. A table without rows is written as one part with only a header.
+ */
+class PartWriter implements RecordWriter, Closeable {
+
+    /**
+     * Opens the channel for a part.
+     */
+    interface PartOpener {
+
+        WritableByteChannel open(int partNumber) throws IOException;
+
+    }
+
+    private final PartOpener opener;
+    private final CSVFormat format;
+    private final Charset charset;
+    private final long maxRows;
+    private final long maxBytes;
+
+    private Object[] header;
+    private CsvChannelWriter writer;
+    private int partCount;
+    private long rowsInPart;
+
+    PartWriter(PartOpener opener, CSVFormat format, Charset charset, long maxRows, long maxBytes) {
+        this.opener = opener;
+        this.format = format;
+        this.charset = charset;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void printRecord(Object... values) throws IOException {
+        if (header == null) {
+            header = values.clone();
+            nextPart();
+            return;
+        }
+        if ((maxRows > 0 && rowsInPart >= maxRows) || (maxBytes > 0 && writer.getByteCount() >= maxBytes)) {
+            nextPart();
+        }
+        writer.printRecord(values);
+        rowsInPart++;
+    }
+
+    int getPartCount() {
+        return partCount;
+    }
+
+    private void nextPart() throws IOException {
+        close();
+        writer = new CsvChannelWriter(opener.open(++partCount), format, charset);
+        writer.printRecord(header);
+        rowsInPart = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import java.io.IOException;
+
+/**
+ * Destination for the csv records of a table, either a {@link org.apache.commons.csv.CSVPrinter} or a
+ * {@link nl.knaw.dans.repo.axxess.core.CsvChannelWriter}.
+ */
+interface RecordWriter {
+
+    void printRecord(Object... values) throws IOException;
+
+}
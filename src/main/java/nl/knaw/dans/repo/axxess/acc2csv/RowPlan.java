@@ -0,0 +1,114 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.Cursor;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Table;
+import nl.knaw.dans.repo.axxess.core.Codex;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.QuoteMode;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The columns of a table, resolved once before extraction of its rows. Row values are read from a
+ * {@link Cursor} in column order, directly into a cell buffer, instead of through a {@link
+ * com.healthmarketscience.jackcess.Row} map. Cells are then encoded in place by a {@link CellEncoder}.
+ */
+class RowPlan {
+
+    private final Column[] columns;
+    private final DataType[] types;
+
+    RowPlan(Table table) {
+        this(table.getColumns());
+    }
+
+    RowPlan(List<? extends Column> columnList) {
+        columns = columnList.toArray(new Column[0]);
+        types = new DataType[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            types[i] = columns[i].getType();
+        }
+    }
+
+    int size() {
+        return columns.length;
+    }
+
+    String[] getColumnNames() {
+        String[] names = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            names[i] = columns[i].getName();
+        }
+        return names;
+    }
+
+    /**
+     * Read the values of the current row of the cursor into <code>cells</code>.
+     *
+     * @param cursor cursor positioned on a row
+     * @param cells  buffer of at least {@link #size()} cells
+     * @throws IOException if the row could not be read
+     */
+    void read(Cursor cursor, Object[] cells) throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            cells[i] = cursor.getCurrentRowValue(columns[i]);
+        }
+    }
+
+    /**
+     * Get an encoder of cells with raw values of this plan. Cells are encoded with the {@link Codex.Encoder}s of the
+     * codex where it has them. These append to a {@link StringBuilder} that takes the place of the raw value in the
+     * cell; if <code>reuseCells</code> is <code>true</code> the same builder is used for a column in all rows, and
+     * the encoded values of a row must be written before the next row is encoded. Numbers are not encoded to
+     * builders for {@link QuoteMode#NON_NUMERIC}, which only leaves {@link Number}s unquoted.
+     *
+     * @param codex      {@link Codex} to encode with
+     * @param format     {@link CSVFormat} the cells are written in
+     * @param reuseCells reuse builders for the encoded values of each row
+     * @return a cell encoder
+     */
+    CellEncoder newCellEncoder(Codex codex, CSVFormat format, boolean reuseCells) {
+        return new CellEncoder(codex, format.getQuoteMode() != QuoteMode.NON_NUMERIC, reuseCells);
+    }
+
+    class CellEncoder {
+
+        private final Codex codex;
+        private final Codex.Encoder[] encoders;
+        private final StringBuilder[] builders;
+
+        private CellEncoder(Codex codex, boolean useEncoders, boolean reuseCells) {
+            this.codex = codex;
+            encoders = new Codex.Encoder[columns.length];
+            builders = reuseCells ? new StringBuilder[columns.length] : null;
+            for (int i = 0; useEncoders && i < columns.length; i++) {
+                encoders[i] = codex.getEncoder(types[i]);
+                if (reuseCells && encoders[i] != null) {
+                    builders[i] = new StringBuilder();
+                }
+            }
+        }
+
+        /**
+         * Replace the raw values in <code>cells</code> with their encoded form.
+         *
+         * @param cells buffer with raw values, as filled by {@link #read(Cursor, Object[])}
+         */
+        void encode(Object[] cells) {
+            for (int i = 0; i < columns.length; i++) {
+                Object value = cells[i];
+                Codex.Encoder encoder = encoders[i];
+                if (encoder == null || value == null) {
+                    cells[i] = codex.encode(types[i], value);
+                } else {
+                    StringBuilder out = builders == null ? new StringBuilder() : builders[i];
+                    out.setLength(0);
+                    cells[i] = encoder.encode(value, out) ? out : null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.Relationship;
+import com.healthmarketscience.jackcess.Table;
+import com.healthmarketscience.jackcess.query.Query;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The relationships, queries and selected table names of a database, read once and shared by the metadata
+ * methods of a {@link MetadataExtractor}. Jackcess reads the system table of relationships again on every call
+ * to {@link Database#getRelationships(Table)}; here relationships are read once and indexed by the names of the
+ * tables they relate. Relationships of a table are listed in the order of Jackcess: those from the table, then
+ * those to the table, each in the order of {@link Database#getRelationships()}.
+ */
+class SchemaIndex {
+
+    private final Database db;
+    private final List<Relationship> relationships;
+    private final FileNotFoundException relationshipException;
+    private final Map<String, List<Relationship>> relationshipsFrom = new HashMap<>();
+    private final Map<String, List<Relationship>> relationshipsTo = new HashMap<>();
+    private final List<Query> queries;
+    private final List<String> tableNames;
+
+    SchemaIndex(Database db, TableSelection selection) throws IOException {
+        this.db = db;
+        List<Relationship> relationships = Collections.emptyList();
+        FileNotFoundException relationshipException = null;
+        try {
+            relationships = db.getRelationships();
+        } catch (FileNotFoundException e) {
+            relationshipException = e;
+        }
+        this.relationships = relationships;
+        this.relationshipException = relationshipException;
+        for (Relationship relationship : relationships) {
+            relationshipsFrom.computeIfAbsent(relationship.getFromTable().getName(), k -> new ArrayList<>())
+                             .add(relationship);
+            relationshipsTo.computeIfAbsent(relationship.getToTable().getName(), k -> new ArrayList<>())
+                           .add(relationship);
+        }
+        queries = db.getQueries();
+        tableNames = selection.getSelectedTableNames(db);
+    }
+
+    Database getDatabase() {
+        return db;
+    }
+
+    /**
+     * Get all relationships of the database.
+     *
+     * @return all relationships
+     * @throws FileNotFoundException if the relationships could not be read
+     */
+    List<Relationship> getRelationships() throws FileNotFoundException {
+        if (relationshipException != null) {
+            throw relationshipException;
+        }
+        return relationships;
+    }
+
+    /**
+     * Get the relationships from or to the given table.
+     *
+     * @param table a table of the database
+     * @return relationships of the table
+     * @throws FileNotFoundException if the relationships could not be read
+     */
+    List<Relationship> getRelationships(Table table) throws FileNotFoundException {
+        if (relationshipException != null) {
+            throw relationshipException;
+        }
+        List<Relationship> tableRelationships =
+          new ArrayList<>(relationshipsFrom.getOrDefault(table.getName(), Collections.emptyList()));
+        for (Relationship relationship : relationshipsTo.getOrDefault(table.getName(), Collections.emptyList())) {
+            // relationships of a table with itself are listed once
+            if (!relationship.getFromTable().getName().equals(table.getName())) {
+                tableRelationships.add(relationship);
+            }
+        }
+        return tableRelationships;
+    }
+
+    List<Query> getQueries() {
+        return queries;
+    }
+
+    List<String> getTableNames() {
+        return tableNames;
+    }
+}
@@ -0,0 +1,111 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import com.healthmarketscience.jackcess.DataType;
+import nl.knaw.dans.repo.axxess.core.Codex;
+import nl.knaw.dans.repo.axxess.core.ErrorListener;
+import nl.knaw.dans.repo.axxess.core.SidecarStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+/**
+ * A {@link Codex} that writes large {@link DataType#OLE} values to a {@link SidecarStore} and encodes them as
+ * references. Other values are encoded by the wrapped {@link Codex}. Failures to write a sidecar file are thrown
+ * as {@link UncheckedIOException}.
+ */
+class SidecarCodex implements Codex {
+
+    private final Codex codex;
+    private final SidecarStore store;
+
+    SidecarCodex(Codex codex, SidecarStore store) {
+        this.codex = codex;
+        this.store = store;
+    }
+
+    @Override
+    public Object encode(DataType type, Object value) {
+        if (isStored(type, value)) {
+            return store((byte[]) value);
+        }
+        return codex.encode(type, value);
+    }
+
+    @Override
+    public Object decode(DataType type, String value) {
+        return codex.decode(type, value);
+    }
+
+    @Override
+    public Encoder getEncoder(DataType type) {
+        Encoder encoder = codex.getEncoder(type);
+        if (type != DataType.OLE) {
+            return encoder;
+        }
+        return (value, out) -> {
+            if (isStored(type, value)) {
+                out.append(store((byte[]) value));
+                return true;
+            }
+            if (encoder != null) {
+                return encoder.encode(value, out);
+            }
+            Object encoded = codex.encode(type, value);
+            if (encoded == null) {
+                return false;
+            }
+            out.append(encoded);
+            return true;
+        };
+    }
+
+    @Override
+    public Decoder getDecoder(DataType type) {
+        return codex.getDecoder(type);
+    }
+
+    private boolean isStored(DataType type, Object value) {
+        return type == DataType.OLE && value instanceof byte[] && store.accepts((byte[]) value);
+    }
+
+    private String store(byte[] value) {
+        try {
+            return store.store(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void setListener(ErrorListener listener) {
+        codex.setListener(listener);
+    }
+
+    @Override
+    public String encodeCollection(Collection<String> value) {
+        return codex.encodeCollection(value);
+    }
+
+    @Override
+    public void setCurrentFile(File file) {
+        codex.setCurrentFile(file);
+    }
+
+    @Override
+    public void setErrorListener(ErrorListener listener) {
+        codex.setErrorListener(listener);
+    }
+
+    @Override
+    public String getFingerprint() {
+        return codex.getFingerprint();
+    }
+
+    @Override
+    public Codex copy() {
+        Codex copy = codex.copy();
+        return copy == null ? null : new SidecarCodex(copy, store);
+    }
+}
@@ -0,0 +1,142 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import com.healthmarketscience.jackcess.RowId;
+import com.healthmarketscience.jackcess.impl.RowIdImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Position of an interrupted table extraction: the row id of the last row written and the size of the csv file
+ * after that row. Saved in a <code>.checkpoint</code> file next to the csv file, which is atomically replaced on
+ * every checkpoint. When the table is complete, a last checkpoint marks the csv file as complete; it is deleted
+ * when all tables of the database are complete.
+ */
+class TableCheckpoint {
+
+    static final String EXTENSION = ".checkpoint";
+
+    private static Logger LOG = LoggerFactory.getLogger(TableCheckpoint.class);
+
+    private final int pageNumber;
+    private final int rowNumber;
+    private final long offset;
+    private final long rowCount;
+    private final boolean complete;
+
+    TableCheckpoint(RowId rowId, long offset, long rowCount) {
+        this.pageNumber = RowIds.getPageNumber(rowId);
+        this.rowNumber = RowIds.getRowNumber(rowId);
+        this.offset = offset;
+        this.rowCount = rowCount;
+        complete = false;
+    }
+
+    private TableCheckpoint(int pageNumber, int rowNumber, long offset, long rowCount, boolean complete) {
+        this.pageNumber = pageNumber;
+        this.rowNumber = rowNumber;
+        this.offset = offset;
+        this.rowCount = rowCount;
+        this.complete = complete;
+    }
+
+    static TableCheckpoint complete(long offset, long rowCount) {
+        return new TableCheckpoint(RowIds.INVALID_NUMBER, RowIds.INVALID_NUMBER, offset, rowCount, true);
+    }
+
+    RowId getRowId() {
+        return RowIds.toRowId(pageNumber, rowNumber);
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    static File fileFor(File csvFile) {
+        return new File(csvFile.getParentFile(), csvFile.getName() + EXTENSION);
+    }
+
+    /**
+     * Read the checkpoint of the given csv file.
+     *
+     * @param csvFile the csv file
+     * @return the checkpoint, or <code>null</code> if there is no valid checkpoint for the csv file
+     * @throws IOException for read errors
+     */
+    static TableCheckpoint read(File csvFile) throws IOException {
+        File file = fileFor(csvFile);
+        if (!file.exists()) {
+            return null;
+        }
+        String[] fields = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim().split(",");
+        try {
+            TableCheckpoint checkpoint = new TableCheckpoint(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+              Long.parseLong(fields[2]), Long.parseLong(fields[3]), Boolean.parseBoolean(fields[4]));
+            if (checkpoint.offset <= csvFile.length()) {
+                return checkpoint;
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            // fall through
+        }
+        LOG.warn("Ignoring invalid checkpoint {}", file.getAbsolutePath());
+        return null;
+    }
+
+    void write(File csvFile) throws IOException {
+        File file = fileFor(csvFile);
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        String content = String.format("%d,%d,%d,%d,%b%n", pageNumber, rowNumber, offset, rowCount, complete);
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static void delete(File csvFile) throws IOException {
+        Files.deleteIfExists(fileFor(csvFile).toPath());
+    }
+
+    /**
+     * The only use of Jackcess internals in a checkpoint: the public {@link RowId} does not expose its page and row
+     * number, so it is taken apart and put together as the {@link RowIdImpl} of Jackcess 2.1.10. Check this class
+     * when upgrading Jackcess.
+     */
+    private static final class RowIds {
+
+        private static final int INVALID_NUMBER = RowIdImpl.INVALID_ROW_NUMBER;
+
+        private static int getPageNumber(RowId rowId) {
+            return ((RowIdImpl) rowId).getPageNumber();
+        }
+
+        private static int getRowNumber(RowId rowId) {
+            return ((RowIdImpl) rowId).getRowNumber();
+        }
+
+        private static RowId toRowId(int pageNumber, int rowNumber) {
+            return new RowIdImpl(pageNumber, rowNumber);
+        }
+    }
+}
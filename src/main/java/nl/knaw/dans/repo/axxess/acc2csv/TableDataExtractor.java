@@ -1,32 +1,65 @@
 package nl.knaw.dans.repo.axxess.acc2csv;
 
 
-import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.Cursor;
 import com.healthmarketscience.jackcess.Database;
-import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Index;
 import com.healthmarketscience.jackcess.Table;
 import nl.knaw.dans.repo.axxess.core.AxxessCheckedException;
 import nl.knaw.dans.repo.axxess.core.AxxessException;
 import nl.knaw.dans.repo.axxess.core.Codex;
+import nl.knaw.dans.repo.axxess.core.CsvChannelWriter;
 import nl.knaw.dans.repo.axxess.core.ErrorListener;
 import nl.knaw.dans.repo.axxess.core.Extractor;
+import nl.knaw.dans.repo.axxess.core.SidecarStore;
+import nl.knaw.dans.repo.axxess.impl.SimpleDatabaseOpener;
 import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class TableDataExtractor extends Extractor<TableDataExtractor> {
 
+    private static final int PIPELINE_BATCH_SIZE = 256;
+
     private static Logger LOG = LoggerFactory.getLogger(TableDataExtractor.class);
 
+    private int parallelism = 1;
+    private int encoderThreads;
+    private long checkpointInterval;
+    private long maxRowsPerPart;
+    private long maxBytesPerPart;
+    private int scanPartitions;
+    private long sidecarThreshold;
+    private SidecarStore sidecars;
+    private Map<String, List<File>> partFiles = Collections.emptyMap();
+    private TableSelection selection = new TableSelection();
+    private DatabaseOpener databaseOpener;
+
     public TableDataExtractor() {
     }
 
@@ -34,64 +67,678 @@ public class TableDataExtractor extends Extractor<TableDataExtractor> {
         setExternalListener(externalListener);
     }
 
+    /**
+     * Extract up to <code>parallelism</code> tables of a database at the same time. Because a {@link Database}
+     * is not thread-safe, each additional worker opens its own read-only handle on the database file with the
+     * {@link DatabaseOpener} in use. Largest tables are extracted first. The order of the returned files does
+     * not depend on this setting. Default <code>1</code>.
+     *
+     * @param parallelism number of tables to extract concurrently, at least 1
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>parallelism</code> is less than 1
+     */
+    public TableDataExtractor withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism should be at least 1, not " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Extract table data in a pipeline: one thread reads rows from the table, <code>encoderThreads</code> threads
+     * encode the values with (copies of) the {@link Codex} in use and the calling thread writes the csv records,
+     * in their original order. Reading, encoding and writing then overlap, which pays off for tables with many
+     * OLE, MEMO or date values. Default <code>0</code>: read, encode and write on the calling thread.
+     *
+     * @param encoderThreads number of encoder threads, <code>0</code> to switch off pipelining
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>encoderThreads</code> is negative
+     */
+    public TableDataExtractor withEncoderThreads(int encoderThreads) {
+        if (encoderThreads < 0) {
+            throw new IllegalArgumentException("Number of encoder threads cannot be negative: " + encoderThreads);
+        }
+        this.encoderThreads = encoderThreads;
+        return this;
+    }
+
+    /**
+     * Save a checkpoint every <code>checkpointInterval</code> rows while extracting a table to a csv file. A
+     * checkpoint holds the row id of the last row written and the size of the csv file after that row, and is
+     * kept in a <code>.checkpoint</code> file next to the csv file until the table is complete. If a csv file
+     * with a checkpoint exists when its table is extracted, it is truncated to the checkpoint and extraction
+     * resumes after the row of the checkpoint. Checkpointed tables are extracted without pipelining and their
+     * digests are not computed while writing. Checkpoints are not saved for csv formats with header comments,
+     * nor for tables written in parts.
+     * Default <code>0</code>, no checkpoints.
+     *
+     * @param checkpointInterval number of rows between checkpoints, <code>0</code> for no checkpoints
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>checkpointInterval</code> is negative
+     */
+    public TableDataExtractor withCheckpointInterval(long checkpointInterval) {
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("Checkpoint interval cannot be negative: " + checkpointInterval);
+        }
+        this.checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    /**
+     * Split the data of a table in part files of at most <code>maxRowsPerPart</code> rows each. Every part starts
+     * with the header record. Part files are named by
+     * {@link nl.knaw.dans.repo.axxess.core.FilenameComposer#getTableDataPartFilename(Table, int)}; a table
+     * without rows is written as one part. Tables are not split for csv formats with header comments.
+     * Default <code>0</code>, no limit on the number of rows.
+     *
+     * @param maxRowsPerPart maximum number of rows per part file, <code>0</code> for no limit
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>maxRowsPerPart</code> is negative
+     * @see #withMaxBytesPerPart(long)
+     */
+    public TableDataExtractor withMaxRowsPerPart(long maxRowsPerPart) {
+        if (maxRowsPerPart < 0) {
+            throw new IllegalArgumentException("Maximum rows per part cannot be negative: " + maxRowsPerPart);
+        }
+        this.maxRowsPerPart = maxRowsPerPart;
+        return this;
+    }
+
+    /**
+     * Split the data of a table in part files of about <code>maxBytesPerPart</code> bytes each. A new part is
+     * started after the record that brings a part to <code>maxBytesPerPart</code> bytes or more. Can be combined
+     * with {@link #withMaxRowsPerPart(long)}, a new part is then started when either limit is reached.
+     * Default <code>0</code>, no limit on the size of parts.
+     *
+     * @param maxBytesPerPart maximum size in bytes of a part file, <code>0</code> for no limit
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>maxBytesPerPart</code> is negative
+     * @see #withMaxRowsPerPart(long)
+     */
+    public TableDataExtractor withMaxBytesPerPart(long maxBytesPerPart) {
+        if (maxBytesPerPart < 0) {
+            throw new IllegalArgumentException("Maximum bytes per part cannot be negative: " + maxBytesPerPart);
+        }
+        this.maxBytesPerPart = maxBytesPerPart;
+        return this;
+    }
+
+    /**
+     * Extract the rows of tables with a primary key in primary key order, which makes the csv files of a table
+     * comparable between runs. If <code>scanPartitions</code> is greater than 1 and a table is written to one csv
+     * file without checkpoints, a primary key on one column of type INT or LONG is split into <code>scanPartitions</code> ranges that
+     * are read and encoded concurrently, each through its own read-only handle on the database file, and the
+     * ranges are joined in key order. Tables without a primary key and tables with row filters are extracted in
+     * the order of storage. Default <code>0</code>: rows are extracted in the order of storage.
+     *
+     * @param scanPartitions number of key ranges to read a table in, <code>0</code> for the order of storage
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>scanPartitions</code> is negative
+     */
+    public TableDataExtractor withScanPartitions(int scanPartitions) {
+        if (scanPartitions < 0) {
+            throw new IllegalArgumentException("Number of scan partitions cannot be negative: " + scanPartitions);
+        }
+        this.scanPartitions = scanPartitions;
+        return this;
+    }
+
+    /**
+     * Only extract the tables, columns and rows selected by the given {@link TableSelection}. Checkpoints are not
+     * saved for tables with row filters.
+     * Default is a {@link TableSelection} that selects everything.
+     *
+     * @param selection the {@link TableSelection} to use
+     * @return this for chaining method calls
+     */
+    public TableDataExtractor withSelection(TableSelection selection) {
+        this.selection = selection == null ? new TableSelection() : selection;
+        return this;
+    }
+
+    /**
+     * Write OLE values of more than <code>sidecarThreshold</code> bytes to sidecar files in the directory of the csv
+     * files, instead of Base64 encoded in the csv files. A sidecar file is named after the sha1 digest of its value,
+     * equal values are written once. The cell holds the digest as reference, see {@link SidecarStore}. Sidecar files
+     * are listed after the csv files of {@link #writeDatabaseData(Database)} and {@link #writeTableFiles(Table)}.
+     * Not used when writing to an archive with {@link #writeDatabaseData(Database, ArchiveWriter)}.
+     * Default <code>0</code>: all values are written in the csv files.
+     *
+     * @param sidecarThreshold size in bytes above which OLE values are written to sidecar files, <code>0</code> for
+     *                         no sidecar files
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>sidecarThreshold</code> is negative
+     */
+    public TableDataExtractor withSidecarThreshold(long sidecarThreshold) {
+        if (sidecarThreshold < 0) {
+            throw new IllegalArgumentException("Sidecar threshold cannot be negative: " + sidecarThreshold);
+        }
+        this.sidecarThreshold = sidecarThreshold;
+        return this;
+    }
+
+    /**
+     * Is table data split in part files.
+     *
+     * @return <code>true</code> if a limit on rows or bytes per part is set and the csv format allows it
+     * @see #withMaxRowsPerPart(long)
+     * @see #withMaxBytesPerPart(long)
+     */
+    public boolean isWritingParts() {
+        return (maxRowsPerPart > 0 || maxBytesPerPart > 0) && CsvChannelWriter.supports(getCSVFormat());
+    }
+
+    /**
+     * Get the part files of the tables written by the last call to {@link #writeDatabaseData(Database)}, by table
+     * name, in the order of the tables. Empty if table data was not split in part files.
+     *
+     * @return part files by table name
+     */
+    public Map<String, List<File>> getPartFiles() {
+        return partFiles;
+    }
+
+    /**
+     * Use the given {@link DatabaseOpener} for opening additional read-only handles on a database.
+     * Default is {@link SimpleDatabaseOpener}.
+     *
+     * @param databaseOpener {@link DatabaseOpener} to use
+     * @return this for chaining method calls
+     * @see #withParallelism(int)
+     */
+    public TableDataExtractor withDatabaseOpener(DatabaseOpener databaseOpener) {
+        this.databaseOpener = databaseOpener;
+        return this;
+    }
+
     public List<File> writeDatabaseData(Database db)
       throws IOException, AxxessException {
+        List<String> tableNames = selection.getSelectedTableNames(db);
+        List<List<File>> tableFiles;
+        SidecarStore store = newSidecarStore(getFilenameComposer().getCsvDirectoryName(db));
+        sidecars = store;
+        try {
+            if (parallelism > 1 && tableNames.size() > 1 && canCopy(getCodex())) {
+                tableFiles = writeDatabaseData(db, tableNames);
+            } else {
+                tableFiles = new ArrayList<>();
+                for (String tableName : tableNames) {
+                    tableFiles.add(writeTableData(db, tableName, getCodex()));
+                }
+            }
+        } finally {
+            sidecars = null;
+        }
         List<File> convertedFiles = new ArrayList<>();
-        for (String tableName : db.getTableNames()) {
+        Map<String, List<File>> parts = new LinkedHashMap<>();
+        for (int i = 0; i < tableNames.size(); i++) {
+            convertedFiles.addAll(tableFiles.get(i));
+            if (isWritingParts() && !tableFiles.get(i).isEmpty()) {
+                parts.put(tableNames.get(i), tableFiles.get(i));
+            }
+        }
+        partFiles = parts;
+        deleteCheckpoints(convertedFiles);
+        return withSidecarFiles(convertedFiles, store);
+    }
+
+    private SidecarStore newSidecarStore(String dirName) {
+        if (sidecarThreshold == 0) {
+            return null;
+        }
+        File directory = FileUtils.getFile(getTargetDirectory().getAbsolutePath(), dirName);
+        return new SidecarStore(directory, getFilenameComposer(), sidecarThreshold, this::openOutputChannel);
+    }
+
+    private List<File> withSidecarFiles(List<File> files, SidecarStore store) {
+        if (store == null) {
+            return files;
+        }
+        List<File> allFiles = new ArrayList<>(files);
+        allFiles.addAll(store.getFiles());
+        return allFiles;
+    }
+
+    private List<List<File>> writeDatabaseData(Database db, List<String> tableNames)
+      throws IOException, AxxessException {
+        List<List<File>> files = new ArrayList<>(Collections.nCopies(tableNames.size(), null));
+        Queue<Integer> queue = new ConcurrentLinkedQueue<>(largestFirst(db, tableNames));
+        int workerCount = Math.min(parallelism, tableNames.size());
+        LOG.debug("Extracting {} tables of {} with {} workers", tableNames.size(), db.getFile().getName(),
+          workerCount);
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < workerCount; i++) {
+                boolean ownHandle = i > 0; // the first worker reads from the handle we were given
+                futures.add(executor.submit(() -> {
+                    Database handle = ownHandle ? openReadOnly(db) : db;
+                    Codex codex = ownHandle ? getCodex().copy() : getCodex();
+                    try {
+                        Integer index;
+                        while ((index = queue.poll()) != null) {
+                            files.set(index, writeTableData(handle, tableNames.get(index), codex));
+                        }
+                    } finally {
+                        if (ownHandle) {
+                            handle.close();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e, db);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AxxessException("Interrupted during parallel extraction of " + db.getFile(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+        // in the order of the table names, whatever the order of completion
+        return files;
+    }
+
+    private static AxxessException unwrap(ExecutionException e, Database db) throws IOException {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause instanceof AxxessException) {
+            return (AxxessException) cause;
+        }
+        return new AxxessException("Exception during parallel extraction of " + db.getFile(), cause);
+    }
+
+    private List<Integer> largestFirst(Database db, List<String> tableNames) {
+        int[] rowCounts = new int[tableNames.size()];
+        for (int i = 0; i < rowCounts.length; i++) {
             try {
-                Table table = db.getTable(tableName);
-                if (table == null) {
-                    throw new AxxessCheckedException("For tableName " + tableName);
-                }
-                convertedFiles.add(writeTableData(table));
+                Table table = db.getTable(tableNames.get(i));
+                rowCounts[i] = table == null ? -1 : table.getRowCount();
+            } catch (IOException e) {
+                rowCounts[i] = -1; // will be reported when the table is extracted
+            }
+        }
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < rowCounts.length; i++) {
+            indexes.add(i);
+        }
+        indexes.sort(Comparator.comparingInt((Integer i) -> rowCounts[i]).reversed());
+        return indexes;
+    }
+
+    private Database openReadOnly(Database db) throws IOException {
+        Database handle = getDatabaseOpener().open(db.getFile(), true);
+        handle.setCharset(db.getCharset());
+        return handle;
+    }
+
+    private DatabaseOpener getDatabaseOpener() {
+        if (databaseOpener == null) {
+            databaseOpener = new SimpleDatabaseOpener();
+        }
+        return databaseOpener;
+    }
+
+    /**
+     * Write the data of all tables of the given database as entries of the given archive. Tables are extracted
+     * one after the other, whatever the setting of {@link #withParallelism(int)}.
+     *
+     * @param db      the database
+     * @param archive the archive to write to
+     * @return names of the newly created entries
+     * @throws IOException     signals a failure in reading or writing
+     * @throws AxxessException signals an insoluble conflict
+     */
+    public List<String> writeDatabaseData(Database db, ArchiveWriter archive) throws IOException, AxxessException {
+        List<String> entryNames = new ArrayList<>();
+        for (String tableName : selection.getSelectedTableNames(db)) {
+            try {
+                Table table = getTable(db, tableName);
+                String entryName = getFilenameComposer().getTableDataFilename(table);
+                int rowCount = writeTableData(table, archive.newEntry(entryName), getCodex());
+                LOG.debug("Wrote {} records to {}", rowCount, entryName);
+                entryNames.add(entryName);
             } catch (FileNotFoundException | AxxessCheckedException e) {
                 LOG.warn("Table ", e);
                 reportWarning(db.getFile(), "Table: " + tableName, e);
             }
         }
-        return convertedFiles;
+        return entryNames;
+    }
+
+    private List<File> writeTableData(Database db, String tableName, Codex codex)
+      throws IOException, AxxessException {
+        try {
+            return writeTableData(getTable(db, tableName), codex);
+        } catch (FileNotFoundException | AxxessCheckedException e) {
+            LOG.warn("Table ", e);
+            reportWarning(db.getFile(), "Table: " + tableName, e);
+            return Collections.emptyList();
+        }
+    }
+
+    private Table getTable(Database db, String tableName) throws IOException, AxxessCheckedException {
+        Table table = db.getTable(tableName);
+        if (table == null) {
+            throw new AxxessCheckedException("For tableName " + tableName);
+        }
+        return table;
     }
 
+    /**
+     * Write the data of the given table to a csv file.
+     *
+     * @param table the table
+     * @return the newly created .csv file, or the first part file if table data is split in part files
+     * @throws IOException     signals a failure in reading or writing
+     * @throws AxxessException signals an insoluble conflict
+     * @see #writeTableFiles(Table)
+     */
     public File writeTableData(Table table) throws IOException, AxxessException {
+        return writeTableFiles(table).get(0);
+    }
+
+    /**
+     * Write the data of the given table to a csv file, or to part files.
+     *
+     * @param table the table
+     * @return the newly created .csv file or part files, followed by sidecar files
+     * @throws IOException     signals a failure in reading or writing
+     * @throws AxxessException signals an insoluble conflict
+     * @see #withMaxRowsPerPart(long)
+     * @see #withMaxBytesPerPart(long)
+     */
+    public List<File> writeTableFiles(Table table) throws IOException, AxxessException {
+        SidecarStore store = newSidecarStore(getFilenameComposer().getCsvDirectoryName(table));
+        List<File> files;
+        sidecars = store;
+        try {
+            files = writeTableData(table, getCodex());
+        } finally {
+            sidecars = null;
+        }
+        deleteCheckpoints(files);
+        return withSidecarFiles(files, store);
+    }
+
+    private List<File> writeTableData(Table table, Codex codex) throws IOException, AxxessException {
+        if (sidecars == null) {
+            return writeTableFiles(table, codex);
+        }
+        try {
+            return writeTableFiles(table, new SidecarCodex(codex, sidecars));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private List<File> writeTableFiles(Table table, Codex codex) throws IOException, AxxessException {
         String dirName = getFilenameComposer().getCsvDirectoryName(table);
+        if (isWritingParts()) {
+            return writeTableParts(table, dirName, codex);
+        }
         String filename = getFilenameComposer().getTableDataFilename(table);
         File file = buildPaths(dirName, filename);
+        if (checkpointInterval > 0 && CsvChannelWriter.supports(getCSVFormat()) && !selection.isFiltering(table)) {
+            long rowCount = writeCheckpointedTableData(table, file, codex);
+            LOG.debug("Wrote {} records to {}", rowCount, file.getName());
+            return Collections.singletonList(file);
+        }
         if (file.exists()) {
             throw new AxxessException("File exists: " + file.getAbsolutePath());
         }
-        OutputStreamWriter osw = null;
+        List<KeyRange> ranges = canCopy(codex) ? getKeyRanges(table) : Collections.emptyList();
+        if (ranges.size() > 1 && CsvChannelWriter.supports(getCSVFormat())) {
+            long rowCount = writeKeyRanges(table, ranges, file, codex);
+            LOG.debug("Wrote {} records to {} from {} key ranges", rowCount, file.getName(), ranges.size());
+            return Collections.singletonList(file);
+        }
+        int rowCount = writeTableData(table, openOutputChannel(file), codex);
+        LOG.debug("Wrote {} records to {}", rowCount, file.getName());
+        return Collections.singletonList(file);
+    }
+
+    private Index getOrderIndex(Table table) {
+        return scanPartitions > 0 && !selection.isFiltering(table) ? KeyRange.getPrimaryKey(table) : null;
+    }
+
+    private List<KeyRange> getKeyRanges(Table table) throws IOException {
+        Index primaryKey = scanPartitions > 1 ? getOrderIndex(table) : null;
+        return primaryKey == null ? Collections.emptyList() : KeyRange.split(primaryKey, scanPartitions);
+    }
+
+    // each range is written to a file of its own, then the range files are joined in key order
+    private long writeKeyRanges(Table table, List<KeyRange> ranges, File file, Codex codex)
+      throws IOException, AxxessException {
+        Database db = table.getDatabase();
+        List<File> rangeFiles = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            rangeFiles.add(new File(file.getParentFile(), file.getName() + ".range-" + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(ranges.size());
         try {
-            osw = new OutputStreamWriter(new FileOutputStream(file), getTargetCharset());
-            int rowCount = getTableData(table, osw);
-            LOG.debug("Wrote {} records to {}", rowCount, file.getName());
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                int index = i;
+                boolean ownHandle = i > 0; // the first range is read from the handle we were given
+                futures.add(executor.submit(() -> {
+                    Database handle = ownHandle ? openReadOnly(db) : db;
+                    try {
+                        return writeKeyRange(getTable(handle, table.getName()), ranges.get(index),
+                          rangeFiles.get(index), ownHandle ? codex.copy() : codex, index == 0);
+                    } finally {
+                        if (ownHandle) {
+                            handle.close();
+                        }
+                    }
+                }));
+            }
+            long rowCount = 0;
+            for (Future<Long> future : futures) {
+                rowCount += future.get();
+            }
+            try (WritableByteChannel out = openOutputChannel(file)) {
+                for (File rangeFile : rangeFiles) {
+                    try (FileChannel in = FileChannel.open(rangeFile.toPath(), StandardOpenOption.READ)) {
+                        long size = in.size();
+                        long position = 0;
+                        while (position < size) {
+                            position += in.transferTo(position, size - position, out);
+                        }
+                    }
+                }
+            }
+            return rowCount;
+        } catch (ExecutionException e) {
+            throw unwrap(e, db);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AxxessException("Interrupted during parallel extraction of " + table.getName(), e);
         } finally {
-            if (osw != null) {
-                osw.close();
+            executor.shutdownNow();
+            for (File rangeFile : rangeFiles) {
+                Files.deleteIfExists(rangeFile.toPath());
             }
         }
-        return file;
+    }
+
+    private long writeKeyRange(Table table, KeyRange range, File rangeFile, Codex codex, boolean withHeader)
+      throws IOException {
+        RowPlan plan = new RowPlan(selection.getSelectedColumns(table));
+        try (FileChannel channel = FileChannel.open(rangeFile.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             CsvChannelWriter writer = new CsvChannelWriter(channel, getCSVFormat(), getTargetCharset())) {
+            if (withHeader) {
+                writer.printRecord((Object[]) plan.getColumnNames());
+            }
+            long rowCount = 0;
+            Object[] cells = new Object[plan.size()];
+            RowPlan.CellEncoder encoder = plan.newCellEncoder(codex, getCSVFormat(), true);
+            Cursor cursor = range.newCursor(table);
+            while (cursor.moveToNextRow()) {
+                rowCount++;
+                plan.read(cursor, cells);
+                encoder.encode(cells);
+                writer.printRecord(cells);
+            }
+            return rowCount;
+        }
+    }
+
+    private List<File> writeTableParts(Table table, String dirName, Codex codex)
+      throws IOException, AxxessException {
+        File firstPart = buildPaths(dirName, getFilenameComposer().getTableDataPartFilename(table, 1));
+        if (firstPart.exists()) {
+            throw new AxxessException("File exists: " + firstPart.getAbsolutePath());
+        }
+        List<File> files = new ArrayList<>();
+        PartWriter.PartOpener opener = partNumber -> {
+            File file = buildPaths(dirName, getFilenameComposer().getTableDataPartFilename(table, partNumber));
+            if (file.exists()) {
+                throw new FileAlreadyExistsException(file.getAbsolutePath());
+            }
+            files.add(file);
+            return openOutputChannel(file);
+        };
+        try (PartWriter parts = new PartWriter(opener, getCSVFormat(), getTargetCharset(), maxRowsPerPart,
+          maxBytesPerPart)) {
+            int rowCount = writeRecords(table, parts, codex);
+            LOG.debug("Wrote {} records to {} parts of {}", rowCount, parts.getPartCount(), table.getName());
+        }
+        return files;
+    }
+
+    private long writeCheckpointedTableData(Table table, File file, Codex codex)
+      throws IOException, AxxessException {
+        TableCheckpoint checkpoint = TableCheckpoint.read(file);
+        if (checkpoint != null && checkpoint.isComplete() && checkpoint.getOffset() == file.length()) {
+            LOG.info("Skipping {}, extracted before", file.getName());
+            reportOutput(file);
+            includeEarlierSidecars();
+            return checkpoint.getRowCount();
+        }
+        if (checkpoint != null && checkpoint.isComplete()) {
+            checkpoint = null; // the csv file changed since
+        }
+        if (checkpoint == null && file.exists()) {
+            throw new AxxessException("File exists: " + file.getAbsolutePath());
+        }
+        RowPlan plan = new RowPlan(selection.getSelectedColumns(table));
+        Cursor cursor = newScan(table, codex).getCursor();
+        if (checkpoint != null && !cursor.findRow(checkpoint.getRowId())) {
+            LOG.warn("Row of checkpoint not found, extracting {} from the start", file.getName());
+            checkpoint = null;
+            cursor = newScan(table, codex).getCursor();
+        }
+        reportOutput(file);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE);
+             CsvChannelWriter writer = new CsvChannelWriter(channel, getCSVFormat(), getTargetCharset())) {
+            long rowCount = 0;
+            if (checkpoint == null) {
+                channel.truncate(0);
+                writer.printRecord((Object[]) plan.getColumnNames());
+            } else {
+                LOG.info("Resuming {} after row {}", file.getName(), checkpoint.getRowCount());
+                includeEarlierSidecars();
+                channel.truncate(checkpoint.getOffset());
+                channel.position(checkpoint.getOffset());
+                rowCount = checkpoint.getRowCount();
+            }
+            Object[] cells = new Object[plan.size()];
+            RowPlan.CellEncoder encoder = plan.newCellEncoder(codex, getCSVFormat(), true);
+            while (cursor.moveToNextRow()) {
+                rowCount++;
+                plan.read(cursor, cells);
+                encoder.encode(cells);
+                writer.printRecord(cells);
+                if (rowCount % checkpointInterval == 0) {
+                    writer.flush();
+                    channel.force(false);
+                    new TableCheckpoint(cursor.getSavepoint().getCurrentPosition().getRowId(), channel.position(),
+                      rowCount).write(file);
+                }
+            }
+            writer.flush();
+            channel.force(false);
+            TableCheckpoint.complete(channel.position(), rowCount).write(file);
+            return rowCount;
+        }
+    }
+
+    // the rows written before a checkpoint can refer to sidecar files of the interrupted extraction
+    private void includeEarlierSidecars() {
+        SidecarStore store = sidecars;
+        if (store != null) {
+            store.includeEarlierFiles();
+        }
+    }
+
+    private void deleteCheckpoints(List<File> files) throws IOException {
+        if (checkpointInterval > 0) {
+            for (File file : files) {
+                TableCheckpoint.delete(file);
+            }
+        }
+    }
+
+    // writes the table to the channel and closes the channel
+    private int writeTableData(Table table, WritableByteChannel channel, Codex codex) throws IOException {
+        if (CsvChannelWriter.supports(getCSVFormat())) {
+            try (CsvChannelWriter writer = new CsvChannelWriter(channel, getCSVFormat(), getTargetCharset())) {
+                return writeRecords(table, writer::printRecord, codex);
+            }
+        }
+        try (OutputStreamWriter osw = new OutputStreamWriter(Channels.newOutputStream(channel),
+          getTargetCharset())) {
+            return getTableData(table, osw, codex);
+        }
     }
 
     public int getTableData(Table table, Appendable out) throws IOException {
-        List<? extends Column> columns = table.getColumns();
-        List<String> columnNames = columns
-          .stream()
-          .map(Column::getName)
-          .collect(Collectors.toList());
+        return getTableData(table, out, getCodex());
+    }
+
+    private int getTableData(Table table, Appendable out, Codex codex) throws IOException {
         CSVPrinter printer = new CSVPrinter(out, getCSVFormat().withFirstRecordAsHeader());
-        printer.printRecord(columnNames);
+        int rowCount = writeRecords(table, printer::printRecord, codex);
+        printer.close();
+        return rowCount;
+    }
+
+    private TableScan newScan(Table table, Codex codex) throws IOException {
+        Index primaryKey = getOrderIndex(table);
+        if (primaryKey == null) {
+            return selection.newScan(table, codex);
+        }
+        return new TableScan(table, table.newCursor().setIndex(primaryKey).toCursor(), Collections.emptyList());
+    }
 
-        Codex currentCodex = getCodex();
+    private int writeRecords(Table table, RecordWriter records, Codex codex) throws IOException {
+        RowPlan plan = new RowPlan(selection.getSelectedColumns(table));
+        records.printRecord((Object[]) plan.getColumnNames());
+
+        TableScan scan = newScan(table, codex);
+        if (encoderThreads > 0 && canCopy(codex)) {
+            return new TablePipeline(encoderThreads, PIPELINE_BATCH_SIZE, codex, getCSVFormat())
+              .run(scan, plan, records);
+        }
         int rowCount = 0;
-        for (Row row : table.newCursor().toCursor()) {
+        Object[] cells = new Object[plan.size()];
+        RowPlan.CellEncoder encoder = plan.newCellEncoder(codex, getCSVFormat(), true);
+        Cursor cursor = scan.getCursor();
+        while (scan.moveToNextRow()) {
             rowCount++;
-            List<Object> cells = new ArrayList<>();
-            for (Column column : columns) {
-                cells.add(currentCodex.encode(column.getType(), row.get(column.getName())));
-            }
-            printer.printRecord(cells);
+            plan.read(cursor, cells);
+            encoder.encode(cells);
+            records.printRecord(cells);
         }
-        printer.close();
         return rowCount;
     }
 }
@@ -0,0 +1,109 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import nl.knaw.dans.repo.axxess.core.Codex;
+import org.apache.commons.csv.CSVFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Extracts the rows of a table in three overlapping stages: a reader thread pulls batches of rows from a
+ * {@link TableScan}, a pool of encoder threads runs the {@link Codex} over these batches and the calling thread
+ * writes the encoded batches in their original order. Stages are connected by a bounded queue, so a slow
+ * writer holds back the reader.
+ */
+class TablePipeline {
+
+    private static final List<Object[]> END = new ArrayList<>(0);
+
+    private final int encoderThreads;
+    private final int batchSize;
+    private final Codex codex;
+    private final CSVFormat format;
+
+    TablePipeline(int encoderThreads, int batchSize, Codex codex, CSVFormat format) {
+        this.encoderThreads = encoderThreads;
+        this.batchSize = batchSize;
+        this.codex = codex;
+        this.format = format;
+    }
+
+    int run(TableScan scan, RowPlan plan, RecordWriter records) throws IOException {
+        // encoded batches are written after other batches are encoded, so cells are not reused
+        ThreadLocal<RowPlan.CellEncoder> cellEncoders =
+          ThreadLocal.withInitial(() -> plan.newCellEncoder(codex.copy(), format, false));
+        BlockingQueue<Future<List<Object[]>>> queue = new ArrayBlockingQueue<>(encoderThreads * 2);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        ExecutorService encoders = Executors.newFixedThreadPool(encoderThreads);
+        try {
+            reader.submit(() -> read(scan, plan, queue, encoders, cellEncoders));
+            int rowCount = 0;
+            List<Object[]> batch;
+            while ((batch = queue.take().get()) != END) {
+                for (Object[] cells : batch) {
+                    records.printRecord(cells);
+                }
+                rowCount += batch.size();
+            }
+            return rowCount;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Exception while extracting table " + scan.getTable().getName(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting table " + scan.getTable().getName(), e);
+        } finally {
+            reader.shutdownNow();
+            encoders.shutdownNow();
+        }
+    }
+
+    private Void read(TableScan scan, RowPlan plan, BlockingQueue<Future<List<Object[]>>> queue,
+                      ExecutorService encoders, ThreadLocal<RowPlan.CellEncoder> cellEncoders)
+      throws InterruptedException {
+        try {
+            List<Object[]> rows = new ArrayList<>(batchSize);
+            while (scan.moveToNextRow()) {
+                Object[] cells = new Object[plan.size()];
+                plan.read(scan.getCursor(), cells);
+                rows.add(cells);
+                if (rows.size() == batchSize) {
+                    queue.put(submit(rows, encoders, cellEncoders));
+                    rows = new ArrayList<>(batchSize);
+                }
+            }
+            if (!rows.isEmpty()) {
+                queue.put(submit(rows, encoders, cellEncoders));
+            }
+            queue.put(CompletableFuture.completedFuture(END));
+        } catch (IOException | RuntimeException e) {
+            // Jackcess wraps IOExceptions in RuntimeIOException while iterating
+            CompletableFuture<List<Object[]>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e.getCause() instanceof IOException ? e.getCause() : e);
+            queue.put(failed);
+        }
+        return null;
+    }
+
+    private Future<List<Object[]>> submit(List<Object[]> rows, ExecutorService encoders,
+                                          ThreadLocal<RowPlan.CellEncoder> cellEncoders) {
+        return encoders.submit(() -> encode(rows, cellEncoders.get()));
+    }
+
+    private List<Object[]> encode(List<Object[]> rows, RowPlan.CellEncoder encoder) {
+        for (Object[] cells : rows) {
+            encoder.encode(cells);
+        }
+        return rows;
+    }
+}
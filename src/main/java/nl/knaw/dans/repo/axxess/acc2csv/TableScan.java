@@ -0,0 +1,133 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.Cursor;
+import com.healthmarketscience.jackcess.Table;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Moves a {@link Cursor} over the rows of a table that meet all of a list of conditions. The cursor may be an
+ * index cursor that only covers the range of one condition already; all conditions are checked on every row.
+ */
+class TableScan {
+
+    private final Table table;
+    private final Cursor cursor;
+    private final Condition[] conditions;
+
+    TableScan(Table table, Cursor cursor, List<Condition> conditions) {
+        this.table = table;
+        this.cursor = cursor;
+        this.conditions = conditions.toArray(new Condition[0]);
+    }
+
+    Table getTable() {
+        return table;
+    }
+
+    Cursor getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Move the cursor to the next row that meets all conditions.
+     *
+     * @return <code>true</code> if there is such a row, <code>false</code> if the cursor is after the last row
+     * @throws IOException for read errors
+     */
+    boolean moveToNextRow() throws IOException {
+        while (cursor.moveToNextRow()) {
+            if (meetsConditions()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean meetsConditions() throws IOException {
+        for (Condition condition : conditions) {
+            if (!condition.accepts(cursor.getCurrentRowValue(condition.column))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A range of values of a column. Bounds that are <code>null</code> are open.
+     */
+    static class Condition {
+
+        private final Column column;
+        private final Object from;
+        private final boolean fromInclusive;
+        private final Object to;
+        private final boolean toInclusive;
+
+        Condition(Column column, Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+            this.column = column;
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+
+        Column getColumn() {
+            return column;
+        }
+
+        Object getFrom() {
+            return from;
+        }
+
+        boolean isFromInclusive() {
+            return fromInclusive;
+        }
+
+        Object getTo() {
+            return to;
+        }
+
+        boolean isToInclusive() {
+            return toInclusive;
+        }
+
+        boolean accepts(Object value) {
+            if (value == null) {
+                return false;
+            }
+            if (from != null) {
+                int c = compare(value, from);
+                if (c < 0 || (c == 0 && !fromInclusive)) {
+                    return false;
+                }
+            }
+            if (to != null) {
+                int c = compare(value, to);
+                return c < 0 || (c == 0 && toInclusive);
+            }
+            return true;
+        }
+
+        // values read from a table and decoded filter values may be numbers of different classes, and Jackcess
+        // reads dates as a subclass of Date
+        @SuppressWarnings("unchecked")
+        private static int compare(Object value, Object bound) {
+            if (value instanceof Number && bound instanceof Number) {
+                try {
+                    return new BigDecimal(value.toString()).compareTo(new BigDecimal(bound.toString()));
+                } catch (NumberFormatException e) {
+                    return Double.compare(((Number) value).doubleValue(), ((Number) bound).doubleValue());
+                }
+            }
+            if (value instanceof Comparable
+              && (value.getClass().isInstance(bound) || bound.getClass().isInstance(value))) {
+                return ((Comparable<Object>) value).compareTo(bound);
+            }
+            return value.toString().compareTo(bound.toString());
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.CursorBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.Index;
+import com.healthmarketscience.jackcess.Relationship;
+import com.healthmarketscience.jackcess.Table;
+import nl.knaw.dans.repo.axxess.core.Codex;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the tables, columns and rows to extract from a database. Tables and columns are selected by regular
+ * expressions: a name is selected if it matches one of the include patterns, or if there are no include
+ * patterns, and matches none of the exclude patterns. Column patterns are matched against the column name and
+ * against the qualified name <code>{table name}.{column name}</code>. Tables without selected columns are
+ * not selected. Metadata only describes the selected tables and columns, and the indexes and relationships
+ * that are made up of selected columns only.
+ * <p>
+ * Rows are selected by row filters: equality or a range on the value of a column. If a row filter is on a number
+ * or date column with an ascending index of its own, only the range of that index is read and rows are extracted
+ * in index order. All row filters are checked on every row that is read, so the selected rows do not depend on
+ * the ordering of an index, such as the case-insensitive ordering of text. Filter values given as a string are
+ * decoded with the {@link Codex} in use, so they are written as they would appear in the csv file. Table names
+ * of row filters are matched case-insensitively, as Jackcess matches them.
+ * <p>
+ * A new {@link TableSelection} selects everything.
+ */
+public class TableSelection {
+
+    private static final Set<DataType> SEEKABLE_TYPES = EnumSet.of(DataType.BYTE, DataType.INT, DataType.LONG,
+      DataType.BIG_INT, DataType.FLOAT, DataType.DOUBLE, DataType.MONEY, DataType.NUMERIC,
+      DataType.SHORT_DATE_TIME);
+
+    private final List<Pattern> tableIncludes = new ArrayList<>();
+    private final List<Pattern> tableExcludes = new ArrayList<>();
+    private final List<Pattern> columnIncludes = new ArrayList<>();
+    private final List<Pattern> columnExcludes = new ArrayList<>();
+    private final List<RowFilter> rowFilters = new ArrayList<>();
+
+    /**
+     * Select tables with a name that matches the given regular expression.
+     *
+     * @param regex regular expression for table names
+     * @return this for chaining method calls
+     */
+    public TableSelection includeTables(String regex) {
+        tableIncludes.add(Pattern.compile(regex));
+        return this;
+    }
+
+    /**
+     * Do not select tables with a name that matches the given regular expression.
+     *
+     * @param regex regular expression for table names
+     * @return this for chaining method calls
+     */
+    public TableSelection excludeTables(String regex) {
+        tableExcludes.add(Pattern.compile(regex));
+        return this;
+    }
+
+    /**
+     * Select columns with a name, or qualified name, that matches the given regular expression.
+     *
+     * @param regex regular expression for column names or <code>{table name}.{column name}</code>
+     * @return this for chaining method calls
+     */
+    public TableSelection includeColumns(String regex) {
+        columnIncludes.add(Pattern.compile(regex));
+        return this;
+    }
+
+    /**
+     * Do not select columns with a name, or qualified name, that matches the given regular expression.
+     *
+     * @param regex regular expression for column names or <code>{table name}.{column name}</code>
+     * @return this for chaining method calls
+     */
+    public TableSelection excludeColumns(String regex) {
+        columnExcludes.add(Pattern.compile(regex));
+        return this;
+    }
+
+    /**
+     * Select the rows of the given table where the given column equals <code>value</code>.
+     *
+     * @param tableName  name of the table
+     * @param columnName name of the column
+     * @param value      value of the column
+     * @return this for chaining method calls
+     */
+    public TableSelection whereEquals(String tableName, String columnName, Object value) {
+        return where(tableName, columnName, value, true, value, true);
+    }
+
+    /**
+     * Select the rows of the given table where the given column lies between <code>from</code> and
+     * <code>to</code>, both inclusive.
+     *
+     * @param tableName  name of the table
+     * @param columnName name of the column
+     * @param from       lowest value of the column, <code>null</code> for no lower bound
+     * @param to         highest value of the column, <code>null</code> for no upper bound
+     * @return this for chaining method calls
+     */
+    public TableSelection whereBetween(String tableName, String columnName, Object from, Object to) {
+        return where(tableName, columnName, from, true, to, true);
+    }
+
+    /**
+     * Select rows with a row filter expression of the form <code>{table name}.{column name}{operator}{value}</code>,
+     * where operator is one of <code>=</code>, <code>&lt;</code>, <code>&lt;=</code>, <code>&gt;</code> or
+     * <code>&gt;=</code>. For example <code>Orders.OrderDate&gt;=2018-01-01T00:00:00</code>.
+     *
+     * @param expression row filter expression
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if the expression cannot be parsed
+     */
+    public TableSelection where(String expression) {
+        int op = indexOfOperator(expression);
+        int dot = expression.indexOf('.');
+        if (op < 0 || dot < 0 || dot > op) {
+            throw new IllegalArgumentException("Not a row filter: " + expression);
+        }
+        String tableName = expression.substring(0, dot).trim();
+        String columnName = expression.substring(dot + 1, op).trim();
+        boolean orEqual = op + 1 < expression.length() && expression.charAt(op + 1) == '='
+          && expression.charAt(op) != '=';
+        String value = expression.substring(orEqual ? op + 2 : op + 1).trim();
+        switch (expression.charAt(op)) {
+            case '=':
+                return where(tableName, columnName, value, true, value, true);
+            case '<':
+                return where(tableName, columnName, null, true, value, orEqual);
+            default:
+                return where(tableName, columnName, value, orEqual, null, true);
+        }
+    }
+
+    private TableSelection where(String tableName, String columnName, Object from, boolean fromInclusive,
+                                 Object to, boolean toInclusive) {
+        rowFilters.add(new RowFilter(tableName, columnName, from, fromInclusive, to, toInclusive));
+        return this;
+    }
+
+    private static int indexOfOperator(String expression) {
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '=' || c == '<' || c == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Does this selection select everything.
+     *
+     * @return <code>true</code> if no patterns and no row filters are set
+     */
+    public boolean isSelectingAll() {
+        return tableIncludes.isEmpty() && tableExcludes.isEmpty() && columnIncludes.isEmpty()
+          && columnExcludes.isEmpty() && rowFilters.isEmpty();
+    }
+
+    public boolean isSelected(String tableName) {
+        return matches(tableIncludes, tableExcludes, tableName, tableName);
+    }
+
+    public boolean isSelected(Column column) {
+        String name = column.getName();
+        return matches(columnIncludes, columnExcludes, name, column.getTable().getName() + "." + name);
+    }
+
+    public boolean isSelected(Table table) {
+        return isSelected(table.getName()) && table.getColumns().stream().anyMatch(this::isSelected);
+    }
+
+    public boolean isSelected(Index index) {
+        return index.getColumns().stream().allMatch(column -> isSelected(column.getColumn()));
+    }
+
+    public boolean isSelected(Relationship relationship) {
+        return isSelected(relationship.getFromTable()) && isSelected(relationship.getToTable())
+          && relationship.getFromColumns().stream().allMatch(this::isSelected)
+          && relationship.getToColumns().stream().allMatch(this::isSelected);
+    }
+
+    /**
+     * Get the names of the selected tables of the given database, in the order of the database.
+     *
+     * @param db the database
+     * @return names of selected tables
+     * @throws IOException for read errors
+     */
+    public List<String> getSelectedTableNames(Database db) throws IOException {
+        List<String> tableNames = new ArrayList<>();
+        for (String tableName : db.getTableNames()) {
+            if (!isSelected(tableName)) {
+                continue;
+            }
+            Table table = columnIncludes.isEmpty() && columnExcludes.isEmpty() ? null : db.getTable(tableName);
+            // unreadable tables are kept, they are reported when extracted
+            if (table == null || isSelected(table)) {
+                tableNames.add(tableName);
+            }
+        }
+        return tableNames;
+    }
+
+    public List<Column> getSelectedColumns(Table table) {
+        List<Column> columns = new ArrayList<>();
+        for (Column column : table.getColumns()) {
+            if (isSelected(column)) {
+                columns.add(column);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Are there row filters on the given table.
+     *
+     * @param table the table
+     * @return <code>true</code> if not all rows of the table are selected
+     */
+    public boolean isFiltering(Table table) {
+        return rowFilters.stream().anyMatch(filter -> filter.tableName.equalsIgnoreCase(table.getName()));
+    }
+
+    /**
+     * Start a scan over the selected rows of the given table.
+     *
+     * @param table the table
+     * @param codex {@link Codex} to decode string filter values with
+     * @return a scan over the selected rows
+     * @throws IOException              for read errors
+     * @throws IllegalArgumentException if a row filter is on a column the table does not have
+     */
+    TableScan newScan(Table table, Codex codex) throws IOException {
+        if (!isFiltering(table)) {
+            return new TableScan(table, table.newCursor().toCursor(), new ArrayList<>());
+        }
+        List<TableScan.Condition> conditions = new ArrayList<>();
+        for (RowFilter filter : rowFilters) {
+            if (filter.tableName.equalsIgnoreCase(table.getName())) {
+                Column column = table.getColumn(filter.columnName);
+                conditions.add(new TableScan.Condition(column, decode(codex, column, filter.from),
+                  filter.fromInclusive, decode(codex, column, filter.to), filter.toInclusive));
+            }
+        }
+        // the condition of the index range is kept, it is checked on every row as well
+        for (TableScan.Condition condition : conditions) {
+            Index index = getIndex(table, condition.getColumn());
+            if (index != null) {
+                CursorBuilder builder = table.newCursor().setIndex(index);
+                if (condition.getFrom() != null) {
+                    builder.setStartEntry(condition.getFrom()).setStartRowInclusive(condition.isFromInclusive());
+                }
+                if (condition.getTo() != null) {
+                    builder.setEndEntry(condition.getTo()).setEndRowInclusive(condition.isToInclusive());
+                }
+                return new TableScan(table, builder.toCursor(), conditions);
+            }
+        }
+        return new TableScan(table, table.newCursor().toCursor(), conditions);
+    }
+
+    // an ascending index on the given number or date column only: the bounds of a condition are reversed on a
+    // descending index, and text is ordered differently by an index than by a condition
+    private static Index getIndex(Table table, Column column) {
+        if (!SEEKABLE_TYPES.contains(column.getType())) {
+            return null;
+        }
+        for (Index index : table.getIndexes()) {
+            if (index.getColumnCount() != 1) {
+                continue;
+            }
+            Index.Column indexColumn = index.getColumns().get(0);
+            if (indexColumn.isAscending() && indexColumn.getName().equals(column.getName())) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private static Object decode(Codex codex, Column column, Object value) {
+        return value instanceof String ? codex.decode(column.getType(), (String) value) : value;
+    }
+
+    private static boolean matches(List<Pattern> includes, List<Pattern> excludes, String name,
+                                   String qualifiedName) {
+        return (includes.isEmpty() || matchesAny(includes, name, qualifiedName))
+          && !matchesAny(excludes, name, qualifiedName);
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, String name, String qualifiedName) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(name).matches() || pattern.matcher(qualifiedName).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "TableSelection{tableIncludes=" + tableIncludes + ", tableExcludes=" + tableExcludes
+          + ", columnIncludes=" + columnIncludes + ", columnExcludes=" + columnExcludes
+          + ", rowFilters=" + rowFilters + "}";
+    }
+
+    private static class RowFilter {
+
+        private final String tableName;
+        private final String columnName;
+        private final Object from;
+        private final boolean fromInclusive;
+        private final Object to;
+        private final boolean toInclusive;
+
+        private RowFilter(String tableName, String columnName, Object from, boolean fromInclusive, Object to,
+                          boolean toInclusive) {
+            this.tableName = tableName;
+            this.columnName = columnName;
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+
+        @Override
+        public String toString() {
+            return tableName + "." + columnName + (fromInclusive ? "[" : "(") + from + "," + to
+              + (toInclusive ? "]" : ")");
+        }
+    }
+}
@@ -5,6 +5,7 @@ import ch.qos.logback.classic.joran.JoranConfigurator;
 import ch.qos.logback.core.joran.spi.JoranException;
 import ch.qos.logback.core.util.StatusPrinter;
 import nl.knaw.dans.repo.axxess.acc2csv.Axxess2CsvConverter;
+import nl.knaw.dans.repo.axxess.acc2csv.TableSelection;
 import nl.knaw.dans.repo.axxess.core.Axxess;
 import nl.knaw.dans.repo.axxess.core.AxxessException;
 import nl.knaw.dans.repo.axxess.csv2acc.Csv2AxxessConverter;
@@ -145,15 +146,29 @@ public class AxxessMain {
             LOG.info("Absolute       db.source.file={}", dbSourceFile.getAbsolutePath());
 
             a2c = new Axxess2CsvConverter()
+              .setResumeConversion("true".equalsIgnoreCase(getProp("axxess.resume", "false")))
+              .withCheckpointInterval(Long.parseLong(getProp("axxess.checkpoint.rows", "0")))
+              .setMemoryMapDatabases("true".equalsIgnoreCase(getProp("db.memory.mapped", "false")))
+              .withInMemoryLimit(Long.parseLong(getProp("db.in.memory.limit", "0")))
               .withTargetDirectory(csvTargetDir)
               .withForceSourceEncoding(getProp("db.force.source.encoding"))
               .withTargetEncoding(csvTargetEncoding)
               .withCSVFormat(csvTargetFormat)
               .setExtractMetadata("true".equalsIgnoreCase(getProp("csv.target.include.metadata", "true")))
               .setExtractTableData("true".equalsIgnoreCase(getProp("csv.target.include.table.data", "true")))
+              .withSelection(getSelection())
+              .withMaxRowsPerPart(Long.parseLong(getProp("csv.target.part.max.rows", "0")))
+              .withMaxBytesPerPart(Long.parseLong(getProp("csv.target.part.max.bytes", "0")))
+              .withSidecarThreshold(Long.parseLong(getProp("csv.target.sidecar.threshold", "0")))
               .setIncludeManifest("true".equalsIgnoreCase(getProp("csv.target.include.manifest", "true")))
               .setArchiveResults("true".equalsIgnoreCase(getProp("create.zip", "false")))
-              .setCompressArchive("true".equalsIgnoreCase(getProp("compress.zip", "false")));
+              .setCompressArchive("true".equalsIgnoreCase(getProp("compress.zip", "false")))
+              .setStreamArchive("true".equalsIgnoreCase(getProp("stream.zip", "false")))
+              .withCompressionThreads(getParallelism("compress.zip.threads"))
+              .withParallelism(getParallelism("axxess.parallelism"))
+              .withTableParallelism(getParallelism("axxess.table.parallelism"))
+              .withScanPartitions(Integer.parseInt(getProp("axxess.scan.partitions", "0")))
+              .withEncoderThreads(Integer.parseInt(getProp("axxess.encoder.threads", "0")));
         }
 
         if (mode.endsWith("a")) {
@@ -170,6 +185,8 @@ public class AxxessMain {
               .withTargetDirectory(dbTargetDir)
               .withSourceEncoding(getProp("csv.source.encoding", csvTargetEncoding))
               .withCSVFormat(getProp("csv.source.csvformat", csvTargetFormat))
+              .withPartParallelism(getParallelism("csv.source.part.parallelism"))
+              .withInMemoryLimit(Long.parseLong(getProp("db.target.in.memory.limit", "0")))
               .withTargetDatabaseFileFormat(getProp("db.target.database.format"))
               .setAutoNumberColumns("true".equalsIgnoreCase(getProp("db.target.autonumber.columns", "false")))
               .setIncludeRelationships("true".equalsIgnoreCase(getProp("db.target.include.relationships", "true")))
@@ -269,6 +286,43 @@ public class AxxessMain {
         return prop;
     }
 
+    private static TableSelection getSelection() {
+        TableSelection selection = new TableSelection();
+        String includeTables = getProp("csv.target.include.tables");
+        if (includeTables != null && !includeTables.isEmpty()) {
+            selection.includeTables(includeTables);
+        }
+        String excludeTables = getProp("csv.target.exclude.tables");
+        if (excludeTables != null && !excludeTables.isEmpty()) {
+            selection.excludeTables(excludeTables);
+        }
+        String includeColumns = getProp("csv.target.include.columns");
+        if (includeColumns != null && !includeColumns.isEmpty()) {
+            selection.includeColumns(includeColumns);
+        }
+        String excludeColumns = getProp("csv.target.exclude.columns");
+        if (excludeColumns != null && !excludeColumns.isEmpty()) {
+            selection.excludeColumns(excludeColumns);
+        }
+        String rowFilters = getProp("csv.target.row.filters");
+        if (rowFilters != null && !rowFilters.isEmpty()) {
+            for (String rowFilter : rowFilters.split(";")) {
+                if (!rowFilter.trim().isEmpty()) {
+                    selection.where(rowFilter.trim());
+                }
+            }
+        }
+        return selection;
+    }
+
+    private static int getParallelism(String key) {
+        String prop = getProp(key, "1");
+        if ("auto".equalsIgnoreCase(prop)) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return Integer.parseInt(prop);
+    }
+
     private static void writeResultFiles(List<File> resultFiles, String filename, File baseDir, boolean absoluteNames)
       throws IOException {
         File file = new File(filename);
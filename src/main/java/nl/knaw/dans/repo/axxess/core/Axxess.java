@@ -52,6 +52,7 @@ public interface Axxess {
     String TABLE_IS_ALLOW_AUTO_NUMBER_INSERT = "IsAllowAutoNumberInsert";
     String TABLE_INDEX_NAMES = "Index names";
     String TABLE_PRIMARY_KEY_INDEX = "PrimaryKeyIndex";
+    String TABLE_PART_FILES = "Part files";
     String TABLE_PROP = "(Property)";
 
     String R_NAME = "Relationship name";
@@ -37,6 +37,31 @@ public interface Codex {
      */
     Object decode(DataType type, String value);
 
+    /**
+     * Get an {@link Encoder} for values of the given type. An encoder is asked for once per column and then used
+     * for all values of the column. It appends the encoded form of a value to a buffer, without intermediate
+     * objects where it can. The default implementation returns <code>null</code>: values of the type are
+     * encoded with {@link #encode(DataType, Object)}.
+     *
+     * @param type the {@link DataType} of the values
+     * @return an {@link Encoder} for the type, or <code>null</code> if there is none
+     */
+    default Encoder getEncoder(DataType type) {
+        return null;
+    }
+
+    /**
+     * Get a {@link Decoder} for strings of the given type. A decoder is asked for once per column and then used
+     * for all values of the column. The default implementation returns <code>null</code>: strings of the type are
+     * decoded with {@link #decode(DataType, String)}.
+     *
+     * @param type the {@link DataType} of the values
+     * @return a {@link Decoder} for the type, or <code>null</code> if there is none
+     */
+    default Decoder getDecoder(DataType type) {
+        return null;
+    }
+
     void setListener(ErrorListener listener);
 
     /**
@@ -51,4 +76,62 @@ public interface Codex {
     void setCurrentFile(File file);
 
     void setErrorListener(ErrorListener listener);
+
+    /**
+     * Get a {@link Codex} with the same settings as this one, to be used on another thread.
+     * The default implementation returns this instance, which is only correct for thread-safe implementations.
+     * <p>
+     * An implementation that cannot be used on several threads returns <code>null</code>. Conversions with such a
+     * {@link Codex} do on one thread what they would otherwise do in parallel: databases, tables, key ranges,
+     * encoding and part files are processed one after the other, with this instance.</p>
+     *
+     * @return a {@link Codex} that can be used concurrently with this one, or <code>null</code> if there is none
+     */
+    default Codex copy() {
+        return this;
+    }
+
+    /**
+     * Get a description of the settings of this {@link Codex} that change the encoded values. Conversions are only
+     * resumed with a {@link Codex} of the same fingerprint. The default implementation returns the class name,
+     * which is only correct for implementations without such settings.
+     *
+     * @return a description of the settings of this {@link Codex}
+     */
+    default String getFingerprint() {
+        return getClass().getName();
+    }
+
+    /**
+     * Encodes values of one {@link DataType}, see {@link Codex#getEncoder(DataType)}. An encoder is used on the
+     * same thread as the {@link Codex} it came from.
+     */
+    interface Encoder {
+
+        /**
+         * Append the encoded form of the given value to <code>out</code>. The appended characters are those of
+         * <code>encode(type, value).toString()</code>, or another string that decodes to the same value.
+         *
+         * @param value the object to be encoded, not <code>null</code>
+         * @param out   buffer to append to
+         * @return <code>false</code> if the value is encoded as <code>null</code> and nothing was appended,
+         * <code>true</code> otherwise
+         */
+        boolean encode(Object value, StringBuilder out);
+    }
+
+    /**
+     * Decodes strings of one {@link DataType}, see {@link Codex#getDecoder(DataType)}. A decoder is used on the
+     * same thread as the {@link Codex} it came from.
+     */
+    interface Decoder {
+
+        /**
+         * Decode the given string <code>value</code>. The result equals that of <code>decode(type, value)</code>.
+         *
+         * @param value the value to be decoded
+         * @return Object equal to the value that was encoded
+         */
+        Object decode(String value);
+    }
 }
@@ -6,8 +6,15 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@link Converter} converts files.
@@ -16,9 +23,11 @@ import java.util.List;
  */
 public abstract class Converter<T extends Converter> extends Extractor<T> {
 
+    public static final String MANIFEST_FILENAME = "manifest-sha1.txt";
+
     private boolean addManifest;
 
-    private int dbCount;
+    private final AtomicInteger dbCount = new AtomicInteger();
 
     /**
      * Convert the given file or files in the given directory. In case of access to csv conversion
@@ -86,29 +95,42 @@ public abstract class Converter<T extends Converter> extends Extractor<T> {
      * @return the number of converted databases
      */
     public int getDatabaseCount() {
-        return dbCount;
+        return dbCount.get();
     }
 
     protected void reset() {
         super.reset();
-        dbCount = 0;
+        dbCount.set(0);
     }
 
-    protected void increaseDbCount() {
-        dbCount++;
+    protected int increaseDbCount() {
+        return dbCount.incrementAndGet();
     }
 
     protected void addManifest(List<File> files) throws IOException {
+        addManifest(files, Collections.emptyMap());
+    }
+
+    /**
+     * Add a manifest to the given files. Digests are taken from <code>digests</code>, only files without
+     * digest are read to compute one.
+     *
+     * @param files   files to include in the manifest, the manifest file itself is added to this list
+     * @param digests sha1 digests computed while writing the files, by file
+     * @throws IOException for read or write errors
+     */
+    protected void addManifest(List<File> files, Map<File, String> digests) throws IOException {
         if (files.isEmpty()) {
             return;
         }
         File directory = files.get(0).getParentFile();
-        File manifest = new File(directory, "manifest-sha1.txt");
+        File manifest = new File(directory, MANIFEST_FILENAME);
         PrintWriter out = null;
         try {
             out = new PrintWriter(manifest, "UTF-8");
             for (File file : files) {
-                out.println(String.format("%s %s", file.getName(), computeSHA1(file)));
+                String sha1 = digests.get(file);
+                printManifestLine(out, file.getName(), sha1 == null ? computeSHA1(file) : sha1);
             }
             files.add(manifest);
         } finally {
@@ -118,6 +140,26 @@ public abstract class Converter<T extends Converter> extends Extractor<T> {
         }
     }
 
+    /**
+     * Write a manifest for the given entries to the given channel, which is closed afterwards.
+     *
+     * @param digests sha1 digests of entries, by entry name, in order of appearance
+     * @param channel channel to write the manifest to
+     * @throws IOException for write errors
+     */
+    protected void writeManifest(Map<String, String> digests, WritableByteChannel channel) throws IOException {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(channel),
+          StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, String> entry : digests.entrySet()) {
+                printManifestLine(out, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void printManifestLine(PrintWriter out, String name, String sha1) {
+        out.println(String.format("%s %s", name, sha1));
+    }
+
     private String computeSHA1(File file) throws IOException {
         BufferedInputStream buff = null;
         try {
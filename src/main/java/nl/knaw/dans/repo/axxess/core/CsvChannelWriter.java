@@ -0,0 +1,419 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.QuoteMode;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes csv records straight to a {@link WritableByteChannel}. Output is byte-for-byte the same as that of a
+ * {@link CSVPrinter} on an {@link java.io.OutputStreamWriter} with the same {@link CSVFormat} and charset, but
+ * values are scanned for quoting in one loop over their characters and encoded into a pooled direct
+ * {@link ByteBuffer}, without the round trips through {@link Appendable} and a separate encoding layer.
+ * UTF-8 is encoded by hand; other charsets go through a {@link CharsetEncoder}.
+ * <p>
+ * Formats with header comments are not supported, see {@link #supports(CSVFormat)}.
+ * Instances are not thread-safe.</p>
+ */
+public class CsvChannelWriter implements Flushable, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char CR = '\r';
+    private static final char LF = '\n';
+    private static final char SP = ' ';
+    private static final char COMMENT = '#';
+
+    private static final Queue<ByteBuffer> BUFFER_POOL = new ConcurrentLinkedQueue<>();
+
+    private final WritableByteChannel channel;
+    private final char delimiter;
+    private final boolean quoteSet;
+    private final char quoteChar;
+    private final boolean escapeSet;
+    private final char escapeChar;
+    private final QuoteMode quoteMode;
+    private final boolean trim;
+    private final boolean trailingDelimiter;
+    private final String recordSeparator;
+    private final String nullValue;
+
+    private final CharsetEncoder encoder; // null for the UTF-8 fast path
+    private final CharBuffer chars;
+    private ByteBuffer bytes;
+    private char pendingHighSurrogate; // UTF-8: a high surrogate at the end of the previous write
+
+    private boolean newRecord = true;
+    private long flushedBytes;
+
+    /**
+     * Can records in the given format be written by a {@link CsvChannelWriter}.
+     *
+     * @param format the {@link CSVFormat} to test
+     * @return <code>true</code> if the format is supported, <code>false</code> otherwise
+     */
+    public static boolean supports(CSVFormat format) {
+        return format.getHeaderComments() == null;
+    }
+
+    /**
+     * Create a writer on the given channel. The channel is closed when this writer is closed.
+     *
+     * @param channel channel to write to
+     * @param format  {@link CSVFormat} of the records
+     * @param charset {@link Charset} for output encoding
+     * @throws IllegalArgumentException if the format is not supported
+     */
+    public CsvChannelWriter(WritableByteChannel channel, CSVFormat format, Charset charset) {
+        if (!supports(format)) {
+            throw new IllegalArgumentException("Unsupported csv format: " + format);
+        }
+        this.channel = channel;
+        delimiter = format.getDelimiter();
+        quoteSet = format.isQuoteCharacterSet();
+        quoteChar = quoteSet ? format.getQuoteCharacter() : 0;
+        escapeSet = format.isEscapeCharacterSet();
+        escapeChar = escapeSet ? format.getEscapeCharacter() : 0;
+        quoteMode = format.getQuoteMode() == null ? QuoteMode.MINIMAL : format.getQuoteMode();
+        trim = format.getTrim();
+        trailingDelimiter = format.getTrailingDelimiter();
+        recordSeparator = format.getRecordSeparator();
+        nullValue = nullValue(format);
+
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            encoder = null;
+            chars = null;
+        } else {
+            // same error handling as OutputStreamWriter
+            encoder = charset.newEncoder()
+              .onMalformedInput(CodingErrorAction.REPLACE)
+              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            chars = CharBuffer.allocate(BUFFER_SIZE / 2);
+        }
+        bytes = BUFFER_POOL.poll();
+        if (bytes == null) {
+            bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    }
+
+    // as CSVFormat.print(Object, Appendable, boolean) renders null
+    private static String nullValue(CSVFormat format) {
+        String nullString = format.getNullString();
+        String value;
+        if (nullString == null) {
+            value = "";
+        } else if (format.getQuoteMode() == QuoteMode.ALL) {
+            value = format.getQuoteCharacter() + nullString + format.getQuoteCharacter();
+        } else {
+            value = nullString;
+        }
+        return format.getTrim() ? value.trim() : value;
+    }
+
+    /**
+     * Write the given values as one record.
+     *
+     * @param values values to write
+     * @throws IOException if writing to the channel fails
+     */
+    public void printRecord(Object... values) throws IOException {
+        for (Object value : values) {
+            print(value);
+        }
+        println();
+    }
+
+    /**
+     * Write a single value, preceded by a delimiter if it is not the first value of the record.
+     *
+     * @param value value to write
+     * @throws IOException if writing to the channel fails
+     */
+    public void print(Object value) throws IOException {
+        if (!newRecord) {
+            write(delimiter);
+        }
+        if (value == null) {
+            write(nullValue, 0, nullValue.length());
+        } else {
+            CharSequence cs = value instanceof CharSequence ? (CharSequence) value : value.toString();
+            if (trim) {
+                cs = trim(cs);
+            }
+            if (quoteSet) {
+                printAndQuote(value, cs);
+            } else if (escapeSet) {
+                printAndEscape(cs);
+            } else {
+                write(cs, 0, cs.length());
+            }
+        }
+        newRecord = false;
+    }
+
+    /**
+     * End the current record.
+     *
+     * @throws IOException if writing to the channel fails
+     */
+    public void println() throws IOException {
+        if (trailingDelimiter) {
+            write(delimiter);
+        }
+        if (recordSeparator != null) {
+            write(recordSeparator, 0, recordSeparator.length());
+        }
+        newRecord = true;
+    }
+
+    private void printAndQuote(Object value, CharSequence cs) throws IOException {
+        int end = cs.length();
+        boolean quote;
+        switch (quoteMode) {
+            case ALL:
+            case ALL_NON_NULL:
+                quote = true;
+                break;
+            case NON_NUMERIC:
+                quote = !(value instanceof Number);
+                break;
+            case NONE:
+                printAndEscape(cs);
+                return;
+            default:
+                quote = needsQuotes(cs, end);
+        }
+        if (!quote) {
+            write(cs, 0, end);
+            return;
+        }
+        write(quoteChar);
+        int start = 0;
+        for (int pos = 0; pos < end; pos++) {
+            if (cs.charAt(pos) == quoteChar) {
+                // write up to and including the quote, then start the next run with the same quote
+                write(cs, start, pos + 1);
+                start = pos;
+            }
+        }
+        write(cs, start, end);
+        write(quoteChar);
+    }
+
+    // QuoteMode.MINIMAL, with the exact rules of commons-csv 1.5
+    private boolean needsQuotes(CharSequence cs, int end) {
+        if (end == 0) {
+            // an empty first value may be the only thing on the line
+            return newRecord;
+        }
+        char c = cs.charAt(0);
+        if (newRecord && (c < 0x20 || c > 0x21 && c < 0x23 || c > 0x2B && c < 0x2D || c > 0x7E)) {
+            return true;
+        }
+        if (c <= COMMENT) {
+            return true;
+        }
+        for (int pos = 0; pos < end; pos++) {
+            c = cs.charAt(pos);
+            if (c == LF || c == CR || c == quoteChar || c == delimiter) {
+                return true;
+            }
+        }
+        return cs.charAt(end - 1) <= SP;
+    }
+
+    private void printAndEscape(CharSequence cs) throws IOException {
+        int start = 0;
+        int end = cs.length();
+        for (int pos = 0; pos < end; pos++) {
+            char c = cs.charAt(pos);
+            if (c == CR || c == LF || c == delimiter || c == escapeChar) {
+                if (pos > start) {
+                    write(cs, start, pos);
+                }
+                write(escapeChar);
+                write(c == LF ? 'n' : c == CR ? 'r' : c);
+                start = pos + 1;
+            }
+        }
+        if (end > start) {
+            write(cs, start, end);
+        }
+    }
+
+    private static CharSequence trim(CharSequence cs) {
+        if (cs instanceof String) {
+            return ((String) cs).trim();
+        }
+        int len = cs.length();
+        int pos = 0;
+        while (pos < len && cs.charAt(pos) <= SP) {
+            pos++;
+        }
+        while (pos < len && cs.charAt(len - 1) <= SP) {
+            len--;
+        }
+        return pos > 0 || len < cs.length() ? cs.subSequence(pos, len) : cs;
+    }
+
+    private void write(char c) throws IOException {
+        if (encoder != null) {
+            if (!chars.hasRemaining()) {
+                encodeChars(false);
+            }
+            chars.put(c);
+        } else if (c < 0x80 && pendingHighSurrogate == 0) {
+            if (!bytes.hasRemaining()) {
+                flushBytes();
+            }
+            bytes.put((byte) c);
+        } else {
+            writeUtf8(String.valueOf(c), 0, 1);
+        }
+    }
+
+    private void write(CharSequence cs, int from, int to) throws IOException {
+        if (encoder != null) {
+            for (int i = from; i < to; i++) {
+                if (!chars.hasRemaining()) {
+                    encodeChars(false);
+                }
+                chars.put(cs.charAt(i));
+            }
+        } else {
+            writeUtf8(cs, from, to);
+        }
+    }
+
+    private void writeUtf8(CharSequence cs, int from, int to) throws IOException {
+        int i = from;
+        if (pendingHighSurrogate != 0 && i < to) {
+            // like OutputStreamWriter, pair it with a low surrogate at the start of this write
+            char high = pendingHighSurrogate;
+            pendingHighSurrogate = 0;
+            if (Character.isLowSurrogate(cs.charAt(i))) {
+                writeUtf8(new String(new char[] {high, cs.charAt(i++)}), 0, 2);
+            } else {
+                writeUtf8("?", 0, 1);
+            }
+        }
+        ByteBuffer bb = bytes;
+        while (i < to) {
+            // room for 3 bytes per char, plus one spare byte for a surrogate pair at the end
+            if (bb.remaining() < 4) {
+                flushBytes();
+            }
+            int limit = Math.min(to, i + (bb.remaining() - 1) / 3);
+            while (i < limit) {
+                char c = cs.charAt(i++);
+                if (c < 0x80) {
+                    bb.put((byte) c);
+                } else if (c < 0x800) {
+                    bb.put((byte) (0xC0 | c >> 6));
+                    bb.put((byte) (0x80 | c & 0x3F));
+                } else if (!Character.isSurrogate(c)) {
+                    bb.put((byte) (0xE0 | c >> 12));
+                    bb.put((byte) (0x80 | c >> 6 & 0x3F));
+                    bb.put((byte) (0x80 | c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i == to) {
+                    pendingHighSurrogate = c;
+                } else if (Character.isHighSurrogate(c) && i < to && Character.isLowSurrogate(cs.charAt(i))) {
+                    int cp = Character.toCodePoint(c, cs.charAt(i++));
+                    bb.put((byte) (0xF0 | cp >> 18));
+                    bb.put((byte) (0x80 | cp >> 12 & 0x3F));
+                    bb.put((byte) (0x80 | cp >> 6 & 0x3F));
+                    bb.put((byte) (0x80 | cp & 0x3F));
+                } else {
+                    bb.put((byte) '?'); // the replacement of the UTF-8 encoder for malformed input
+                }
+            }
+        }
+    }
+
+    private void encodeChars(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                flushBytes();
+            } else {
+                break;
+            }
+        }
+        // an unpaired high surrogate may be left for the next round
+        chars.compact();
+    }
+
+    private void flushBytes() throws IOException {
+        bytes.flip();
+        flushedBytes += bytes.remaining();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /**
+     * Get the number of bytes written so far, including buffered bytes that were not yet written to the channel.
+     * For charsets other than UTF-8, characters that were not yet encoded are not counted.
+     *
+     * @return number of bytes written
+     */
+    public long getByteCount() {
+        return flushedBytes + (bytes == null ? 0 : bytes.position());
+    }
+
+    /**
+     * Write buffered output to the channel.
+     *
+     * @throws IOException if writing to the channel fails
+     */
+    @Override
+    public void flush() throws IOException {
+        if (encoder != null) {
+            encodeChars(false);
+        }
+        flushBytes();
+    }
+
+    /**
+     * Write buffered output and close the channel.
+     *
+     * @throws IOException if writing to or closing the channel fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (bytes == null) {
+            return;
+        }
+        try {
+            if (encoder != null) {
+                encodeChars(true);
+                while (encoder.flush(bytes).isOverflow()) {
+                    flushBytes();
+                }
+            } else if (pendingHighSurrogate != 0) {
+                pendingHighSurrogate = 0;
+                writeUtf8("?", 0, 1);
+            }
+            flushBytes();
+        } finally {
+            bytes.clear();
+            BUFFER_POOL.offer(bytes);
+            bytes = null;
+            channel.close();
+        }
+    }
+}
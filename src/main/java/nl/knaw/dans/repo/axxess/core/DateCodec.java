@@ -0,0 +1,273 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Encodes and decodes the date times of {@link DefaultCodex}, see there for the representation. Fields are computed
+ * from epoch milliseconds and the offset of the time zone, instead of by a {@link Calendar} per value. The date part
+ * of the last encoded value and the last decoded strings are cached, for columns with many equal dates.
+ * <p>
+ * Results are the same as those of a {@link Calendar} in the default time zone. The {@link Calendar} is still used
+ * for times before the Gregorian cutover of 1582, after the year 9999, and for decoding near a transition of the
+ * time zone offset, where a wall time may not exist or exist twice. Instances are not thread-safe.</p>
+ */
+class DateCodec {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    // a window around decoded times, without offset transitions the arithmetic is exact
+    private static final long TRANSITION_MARGIN = 2 * DAY;
+    private static final int TIME_YEAR = 1899;
+    private static final int TIME_MONTH = 12;
+    private static final int TIME_DAY = 30;
+    private static final int DECODE_CACHE_SIZE = 64;
+    private static final Pattern digitPattern = Pattern.compile("d?\\d+");
+
+    private final TimeZone zone;
+    private final Calendar calendar;
+    private final boolean gregorian;
+    private final long gregorianChange;
+
+    private long cachedDay = Long.MIN_VALUE;
+    private final char[] cachedDate = new char[11]; // yyyy-MM-ddT
+    private boolean cachedTime; // the cached day is 1899-12-30
+    private final String[] decodedStrings = new String[DECODE_CACHE_SIZE];
+    private final long[] decodedMillis = new long[DECODE_CACHE_SIZE];
+    private final StringBuilder builder = new StringBuilder(19);
+
+    DateCodec() {
+        calendar = Calendar.getInstance();
+        zone = calendar.getTimeZone();
+        // other calendars, like those of Thai and Japanese locales, number years differently
+        gregorian = calendar.getClass() == GregorianCalendar.class;
+        gregorianChange = gregorian ? ((GregorianCalendar) calendar).getGregorianChange().getTime() : 0;
+    }
+
+    /**
+     * Encode the given date.
+     *
+     * @param date the date to encode
+     * @return date time as '2011-12-03T10:15:30' or time as '10:15:30'
+     */
+    String encode(Date date) {
+        builder.setLength(0);
+        return append(date, builder).toString();
+    }
+
+    /**
+     * Append the encoded form of the given date to <code>out</code>.
+     *
+     * @param date the date to encode
+     * @param out  buffer to append to
+     * @return the buffer
+     */
+    StringBuilder append(Date date, StringBuilder out) {
+        long millis = date.getTime();
+        long local = millis + zone.getOffset(millis);
+        if (!gregorian || local < gregorianChange) {
+            return out.append(encodeWithCalendar(date));
+        }
+        long day = Math.floorDiv(local, DAY);
+        if (day != cachedDay && !cacheDate(day)) {
+            return out.append(encodeWithCalendar(date));
+        }
+        if (!cachedTime) {
+            out.append(cachedDate);
+        }
+        int secondOfDay = (int) (Math.floorMod(local, DAY) / 1000);
+        appendTwoDigits(secondOfDay / 3600, out).append(':');
+        appendTwoDigits(secondOfDay / 60 % 60, out).append(':');
+        return appendTwoDigits(secondOfDay % 60, out);
+    }
+
+    // fills the cache with the date of the given epoch day, false if its year has more than 4 digits
+    private boolean cacheDate(long epochDay) {
+        // days to civil date, see http://howardhinnant.github.io/date_algorithms.html
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year > 9999) {
+            return false;
+        }
+        int y = (int) year;
+        cachedDate[0] = (char) ('0' + y / 1000);
+        cachedDate[1] = (char) ('0' + y / 100 % 10);
+        cachedDate[2] = (char) ('0' + y / 10 % 10);
+        cachedDate[3] = (char) ('0' + y % 10);
+        cachedDate[4] = '-';
+        cachedDate[5] = (char) ('0' + month / 10);
+        cachedDate[6] = (char) ('0' + month % 10);
+        cachedDate[7] = '-';
+        cachedDate[8] = (char) ('0' + day / 10);
+        cachedDate[9] = (char) ('0' + day % 10);
+        cachedDate[10] = 'T';
+        cachedTime = y == TIME_YEAR && month == TIME_MONTH && day == TIME_DAY;
+        cachedDay = epochDay;
+        return true;
+    }
+
+    private static StringBuilder appendTwoDigits(int value, StringBuilder out) {
+        return out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private String encodeWithCalendar(Date date) {
+        // Access date times are unaware of time zones so we cannot use
+        //      LocalDateTime ldt = LocalDateTime.ofInstant(((Date)value).toInstant(), ZoneId.systemDefault());
+        // because ZoneId will (over)correct historical date times.
+        // see https://www.timeanddate.com/time/zone/netherlands/amsterdam?year=1909
+        calendar.setTime(date);
+        int year = calendar.get(Calendar.YEAR);
+        int month = calendar.get(Calendar.MONTH) + 1;
+        int day = calendar.get(Calendar.DAY_OF_MONTH);
+        int hour = calendar.get(Calendar.HOUR_OF_DAY);
+        int minute = calendar.get(Calendar.MINUTE);
+        int second = calendar.get(Calendar.SECOND);
+        if (year == TIME_YEAR && month == TIME_MONTH && day == TIME_DAY) {
+            return DateTimeFormatter.ISO_LOCAL_TIME.format(LocalTime.of(hour, minute, second));
+        } else {
+            return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(
+              LocalDateTime.of(year, month, day, hour, minute, second));
+        }
+    }
+
+    /**
+     * Decode the given string.
+     *
+     * @param value date time as '2011-12-03T10:15:30' or time as '10:15:30'
+     * @return the decoded date
+     */
+    Date decode(String value) {
+        int slot = value.hashCode() & (DECODE_CACHE_SIZE - 1);
+        if (value.equals(decodedStrings[slot])) {
+            return new Date(decodedMillis[slot]);
+        }
+        long millis = Long.MIN_VALUE;
+        if (gregorian && value.length() == 8) {
+            millis = toMillis(TIME_YEAR, TIME_MONTH, TIME_DAY, value, 0);
+        } else if (gregorian && value.length() == 19 && value.charAt(4) == '-' && value.charAt(7) == '-'
+          && value.charAt(10) == 'T') {
+            millis = toMillis(digits(value, 0, 4), digits(value, 5, 2), digits(value, 8, 2), value, 11);
+        }
+        if (millis == Long.MIN_VALUE) {
+            millis = decodeWithCalendar(value);
+        }
+        decodedStrings[slot] = value;
+        decodedMillis[slot] = millis;
+        return new Date(millis);
+    }
+
+    // millis of the date and the time 'HH:mm:ss' at offset, Long.MIN_VALUE if the calendar should decide
+    private long toMillis(int year, int month, int day, String value, int offset) {
+        if (value.charAt(offset + 2) != ':' || value.charAt(offset + 5) != ':') {
+            return Long.MIN_VALUE;
+        }
+        int hour = digits(value, offset, 2);
+        int minute = digits(value, offset + 3, 2);
+        int second = digits(value, offset + 6, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+          || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return Long.MIN_VALUE; // lenient calendar arithmetic, or not digits
+        }
+        long local = (daysFromCivil(year, month, day) * 24 + hour) * 3600000L + (minute * 60 + second) * 1000L;
+        if (local < gregorianChange + TRANSITION_MARGIN) {
+            return Long.MIN_VALUE;
+        }
+        int offsetBefore = zone.getOffset(local - TRANSITION_MARGIN);
+        long millis = local - offsetBefore;
+        if (zone.getOffset(millis) != offsetBefore || zone.getOffset(local + TRANSITION_MARGIN) != offsetBefore) {
+            return Long.MIN_VALUE;
+        }
+        return millis;
+    }
+
+    private static int digits(String value, int from, int count) {
+        int result = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        if (month == 2) {
+            return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    // civil date to days, see http://howardhinnant.github.io/date_algorithms.html
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private long decodeWithCalendar(String value) {
+        Matcher m = digitPattern.matcher(value);
+        if (value.length() == 8) {
+            int hour = 0;
+            int minute = 0;
+            int second = 0;
+            if (m.find()) {
+                hour = Integer.parseInt(m.group());
+                if (m.find()) {
+                    minute = Integer.parseInt(m.group());
+                    if (m.find()) {
+                        second = Integer.parseInt(m.group());
+                    }
+                }
+            }
+            calendar.clear();
+            calendar.set(TIME_YEAR, TIME_MONTH - 1, TIME_DAY, hour, minute, second);
+            return calendar.getTimeInMillis();
+        } else {
+            int year = 0;
+            int month = 0;
+            int day = 1;
+            int hour = 0;
+            int minute = 0;
+            int second = 0;
+            if (m.find()) {
+                year = Integer.parseInt(m.group());
+                if (m.find()) {
+                    month = Integer.parseInt(m.group()) - 1;
+                    if (m.find()) {
+                        day = Integer.parseInt(m.group());
+                        if (m.find()) {
+                            hour = Integer.parseInt(m.group());
+                            if (m.find()) {
+                                minute = Integer.parseInt(m.group());
+                                if (m.find()) {
+                                    second = Integer.parseInt(m.group());
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            calendar.clear();
+            calendar.set(year, month, day, hour, minute, second);
+            return calendar.getTimeInMillis();
+        }
+    }
+}
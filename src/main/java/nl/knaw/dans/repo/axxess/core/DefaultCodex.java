@@ -6,15 +6,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.math.BigInteger;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Base64;
-import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -57,12 +54,25 @@ import java.util.regex.Pattern;
 public class DefaultCodex implements Codex {
 
     private static final String CSV_DELIMITER = ",";
-    private static final Pattern digitPattern = Pattern.compile("d?\\d+");
+    private static final char CR = '\r';
+    private static final char LF = '\n';
+    private static final char CR_CODE = '\u0002';
+    private static final char LF_CODE = '\u0001';
+    private static final int MAX_REUSED_BUILDER_LENGTH = 64 * 1024;
+    private static final char[] BASE64_DIGITS =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    // Base64 is appended in chunks of 4 characters for every 3 bytes
+    private static final int BASE64_CHUNK_BYTES = 3 * 1024;
+    private static final long[] DECIMAL_POW10 = {1, 10, 100, 1000, 10000, 100000, 1000000};
     private static Logger LOG = LoggerFactory.getLogger(DefaultCodex.class);
     private ErrorListener listener;
     private String booleanTrue = "true";
     private String booleanFalse = "false";
     private File currentFile;
+    private final StringBuilder builder = new StringBuilder();
+    private char[] base64Chunk;
+    private DateCodec dateCodec;
+    private final NumberParser numberParser = new NumberParser();
 
     /**
      * Construct a new {@link DefaultCodex} with the given <code>listener</code>.
@@ -104,6 +114,52 @@ public class DefaultCodex implements Codex {
         return this;
     }
 
+    /**
+     * Get a new {@link DefaultCodex} with the same settings as this one. A {@link DefaultCodex} keeps track of
+     * the current file and is therefore not thread-safe; each thread should use its own copy.
+     * <p>
+     * Subclasses should override this method and return an instance of their own class, with the settings copied
+     * by {@link #copyTo(DefaultCodex)}. For a subclass that does not, this method returns <code>null</code> and
+     * conversions with it run on one thread.</p>
+     *
+     * @return a copy of this {@link DefaultCodex}, or <code>null</code> if this is an instance of a subclass that
+     * does not override this method
+     */
+    @Override
+    public DefaultCodex copy() {
+        if (getClass() != DefaultCodex.class) {
+            return null;
+        }
+        return copyTo(new DefaultCodex(listener));
+    }
+
+    /**
+     * Copy the listener, boolean strings and current file of this {@link DefaultCodex} to the given one.
+     * Subclasses use it in their implementation of {@link #copy()}.
+     *
+     * @param copy the codex to copy the settings to
+     * @param <C>  type of the codex
+     * @return the given codex
+     */
+    protected <C extends DefaultCodex> C copyTo(C copy) {
+        DefaultCodex codex = copy;
+        codex.listener = listener;
+        codex.booleanTrue = booleanTrue;
+        codex.booleanFalse = booleanFalse;
+        codex.currentFile = currentFile;
+        return copy;
+    }
+
+    /**
+     * Get the class name and boolean strings of this {@link DefaultCodex}.
+     *
+     * @return a description of the settings of this {@link DefaultCodex}
+     */
+    @Override
+    public String getFingerprint() {
+        return getClass().getName() + "|" + booleanTrue + "|" + booleanFalse;
+    }
+
     public Object encode(DataType type, Object value) {
         if (value == null) {
             return null;
@@ -126,6 +182,124 @@ public class DefaultCodex implements Codex {
         return value;
     }
 
+    /**
+     * Get an {@link Encoder} for values of the given type. There are encoders for {@link DataType#BOOLEAN},
+     * integer and floating point types, {@link DataType#SHORT_DATE_TIME}, {@link DataType#TEXT},
+     * {@link DataType#MEMO} and {@link DataType#OLE}; other types are encoded with
+     * {@link #encode(DataType, Object)}. Numbers, dates and Base64 are appended character by character, without an
+     * intermediate {@link String}. Floating point numbers are appended as the shortest decimal that parses back to
+     * the same value. {@link DataType#MONEY} values are appended digit by digit, as {@link BigDecimal#toString()}
+     * writes them.
+     * <p>
+     * Subclasses that override {@link #encode(DataType, Object)} get no encoders, unless they override this method
+     * as well.
+     * </p>
+     *
+     * @param type the {@link DataType} of the values
+     * @return an {@link Encoder} for the type, or <code>null</code> if there is none
+     */
+    @Override
+    public Encoder getEncoder(DataType type) {
+        if (overrides("encode", Object.class)) {
+            return null;
+        }
+        switch (type) {
+            case BOOLEAN:
+                return (value, out) -> append(((boolean) value) ? booleanTrue : booleanFalse, out);
+            case BYTE:
+            case INT:
+            case LONG:
+            case BIG_INT:
+                return DefaultCodex::appendInteger;
+            case FLOAT:
+            case DOUBLE:
+                return DefaultCodex::appendFloatingPoint;
+            case MONEY:
+                return DefaultCodex::appendDecimal;
+            case SHORT_DATE_TIME:
+                return this::appendDate;
+            case TEXT:
+            case MEMO:
+                return this::appendString;
+            case OLE:
+                return this::appendOLE;
+            default:
+                return null;
+        }
+    }
+
+    private boolean overrides(String method, Class<?> valueClass) {
+        try {
+            return getClass().getMethod(method, DataType.class, valueClass).getDeclaringClass()
+              != DefaultCodex.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    private static boolean append(String encoded, StringBuilder out) {
+        if (encoded == null) {
+            return false;
+        }
+        out.append(encoded);
+        return true;
+    }
+
+    private static boolean appendInteger(Object value, StringBuilder out) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.append(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            out.append(((Long) value).longValue());
+        } else {
+            out.append(value);
+        }
+        return true;
+    }
+
+    private static boolean appendFloatingPoint(Object value, StringBuilder out) {
+        if (value instanceof Double) {
+            ShortestDecimal.append(((Double) value).doubleValue(), out);
+        } else if (value instanceof Float) {
+            ShortestDecimal.append(((Float) value).floatValue(), out);
+        } else {
+            out.append(value);
+        }
+        return true;
+    }
+
+    // BigDecimal.toString() of a value with a scale of 0 up to 6 is in plain notation; money has a scale of 4
+    private static boolean appendDecimal(Object value, StringBuilder out) {
+        if (!(value instanceof BigDecimal)) {
+            out.append(value);
+            return true;
+        }
+        BigDecimal decimal = (BigDecimal) value;
+        int scale = decimal.scale();
+        BigInteger unscaled = decimal.unscaledValue();
+        if (scale < 0 || scale >= DECIMAL_POW10.length || unscaled.bitLength() > 62) {
+            out.append(decimal);
+            return true;
+        }
+        long digits = unscaled.longValue();
+        if (digits < 0) {
+            out.append('-');
+            digits = -digits;
+        }
+        long pow = DECIMAL_POW10[scale];
+        out.append(digits / pow);
+        if (scale > 0) {
+            out.append('.');
+            long fraction = digits % pow;
+            for (long p = pow / 10; p > fraction; p /= 10) {
+                out.append('0');
+            }
+            if (fraction > 0) {
+                out.append(fraction);
+            }
+        }
+        return true;
+    }
+
     public Object decode(DataType type, String value) {
         if (value == null || value.isEmpty()) {
             return null;
@@ -133,17 +307,17 @@ public class DefaultCodex implements Codex {
         if (DataType.BOOLEAN == type) {
             return value.equals(booleanTrue);
         } else if (DataType.BYTE == type) {
-            return Byte.valueOf(value);
+            return numberParser.toByte(value);
         } else if (DataType.INT == type) {
-            return Integer.parseInt(value);
+            return numberParser.toInteger(value);
         } else if (DataType.LONG == type) {
-            return Integer.parseInt(value);
+            return numberParser.toInteger(value);
         } else if (DataType.MONEY == type) {
-            return new BigDecimal(value);
+            return numberParser.toBigDecimal(value);
         } else if (DataType.FLOAT == type) {
-            return Float.valueOf(value);
+            return numberParser.toFloat(value);
         } else if (DataType.DOUBLE == type) {
-            return Double.valueOf(value);
+            return numberParser.toDouble(value);
         } else if (DataType.SHORT_DATE_TIME == type) {
             return decodeDate(value);
         } else if (DataType.BINARY == type) {
@@ -180,6 +354,54 @@ public class DefaultCodex implements Codex {
         }
     }
 
+    /**
+     * Get a {@link Decoder} for strings of the given type. There are decoders for {@link DataType#BOOLEAN}, integer,
+     * decimal and floating point types, {@link DataType#SHORT_DATE_TIME}, {@link DataType#TEXT} and
+     * {@link DataType#MEMO}; other types are decoded with {@link #decode(DataType, String)}. Numbers are parsed
+     * from the characters of the string, small integers are not boxed anew.
+     * <p>
+     * Subclasses that override {@link #decode(DataType, String)} get no decoders, unless they override this method
+     * as well.
+     * </p>
+     *
+     * @param type the {@link DataType} of the values
+     * @return a {@link Decoder} for the type, or <code>null</code> if there is none
+     */
+    @Override
+    public Decoder getDecoder(DataType type) {
+        if (overrides("decode", String.class)) {
+            return null;
+        }
+        switch (type) {
+            case BOOLEAN:
+                return nonEmpty(value -> value.equals(booleanTrue));
+            case BYTE:
+                return nonEmpty(numberParser::toByte);
+            case INT:
+            case LONG:
+                return nonEmpty(numberParser::toInteger);
+            case BIG_INT:
+                return nonEmpty(Long::valueOf);
+            case MONEY:
+                return nonEmpty(numberParser::toBigDecimal);
+            case FLOAT:
+                return nonEmpty(numberParser::toFloat);
+            case DOUBLE:
+                return nonEmpty(numberParser::toDouble);
+            case SHORT_DATE_TIME:
+                return nonEmpty(this::decodeDate);
+            case TEXT:
+            case MEMO:
+                return nonEmpty(this::decodeString);
+            default:
+                return null;
+        }
+    }
+
+    private static Decoder nonEmpty(Decoder decoder) {
+        return value -> value == null || value.isEmpty() ? null : decoder.decode(value);
+    }
+
     private String encodeOLE(Object value) {
         if (value instanceof byte[]) {
             return Base64.getEncoder().encodeToString(((byte[]) value));
@@ -190,13 +412,46 @@ public class DefaultCodex implements Codex {
         }
     }
 
+    // the same characters as those of encodeOLE, without the intermediate byte array and String
+    private boolean appendOLE(Object value, StringBuilder out) {
+        if (!(value instanceof byte[])) {
+            return append(encodeOLE(value), out);
+        }
+        byte[] bytes = (byte[]) value;
+        out.ensureCapacity(out.length() + (bytes.length + 2) / 3 * 4);
+        if (base64Chunk == null) {
+            base64Chunk = new char[BASE64_CHUNK_BYTES / 3 * 4];
+        }
+        char[] chunk = base64Chunk;
+        int whole = bytes.length - bytes.length % 3;
+        int i = 0;
+        while (i < whole) {
+            int end = Math.min(whole, i + BASE64_CHUNK_BYTES);
+            int length = 0;
+            for (; i < end; i += 3) {
+                int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | bytes[i + 2] & 0xff;
+                chunk[length++] = BASE64_DIGITS[bits >>> 18];
+                chunk[length++] = BASE64_DIGITS[bits >>> 12 & 0x3f];
+                chunk[length++] = BASE64_DIGITS[bits >>> 6 & 0x3f];
+                chunk[length++] = BASE64_DIGITS[bits & 0x3f];
+            }
+            out.append(chunk, 0, length);
+        }
+        if (i < bytes.length) {
+            int bits = (bytes[i] & 0xff) << 16 | (i + 1 < bytes.length ? (bytes[i + 1] & 0xff) << 8 : 0);
+            out.append(BASE64_DIGITS[bits >>> 18]).append(BASE64_DIGITS[bits >>> 12 & 0x3f])
+               .append(i + 1 < bytes.length ? BASE64_DIGITS[bits >>> 6 & 0x3f] : '=').append('=');
+        }
+        return true;
+    }
+
     private byte[] decodeOLE(String value) {
         return Base64.getDecoder().decode(value);
     }
 
     private String encodeString(Object value) {
         if (value instanceof String) {
-            return ((String) value).replaceAll("\r", "\u0002").replaceAll("\n", "\u0001");
+            return replace((String) value, CR, CR_CODE, LF, LF_CODE);
         } else {
             getListener().reportWarning(currentFile, "codex",
               new AxxessCheckedException("Unexpected String field type: " + value.getClass()));
@@ -204,38 +459,51 @@ public class DefaultCodex implements Codex {
         }
     }
 
+    private boolean appendString(Object value, StringBuilder out) {
+        if (!(value instanceof String)) {
+            return append(encodeString(value), out);
+        }
+        String string = (String) value;
+        int length = string.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c == CR || c == LF) {
+                out.append(string, start, i).append(c == CR ? CR_CODE : LF_CODE);
+                start = i + 1;
+            }
+        }
+        out.append(string, start, length);
+        return true;
+    }
+
     private String decodeString(String value) {
-        return value.replaceAll("\u0002", "\r").replaceAll("\u0001", "\n");
-    }
-
-    private Object getJavaTime(Date value) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(((Date) value));
-        int year = calendar.get(Calendar.YEAR);
-        int month = calendar.get(Calendar.MONTH) + 1;
-        int day = calendar.get(Calendar.DAY_OF_MONTH);
-        int hour = calendar.get(Calendar.HOUR_OF_DAY);
-        int minute = calendar.get(Calendar.MINUTE);
-        int second = calendar.get(Calendar.SECOND);
-        if (year == 1899 && month == 12 && day == 30) {
-            return LocalTime.of(hour, minute, second);
-        } else {
-            return LocalDateTime.of(year, month, day, hour, minute, second);
+        return replace(value, CR_CODE, CR, LF_CODE, LF);
+    }
+
+    // replaces a with aReplacement and b with bReplacement in one pass; the value itself if it has neither
+    private String replace(String value, char a, char aReplacement, char b, char bReplacement) {
+        int length = value.length();
+        int i = 0;
+        while (i < length && value.charAt(i) != a && value.charAt(i) != b) {
+            i++;
+        }
+        if (i == length) {
+            return value;
         }
+        StringBuilder sb = length <= MAX_REUSED_BUILDER_LENGTH ? builder : new StringBuilder(length);
+        sb.setLength(0);
+        sb.append(value, 0, i);
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            sb.append(c == a ? aReplacement : c == b ? bReplacement : c);
+        }
+        return sb.toString();
     }
 
     private String encodeDate(Object value) {
-        // Access date times are unaware of time zones so we cannot use
-        //      LocalDateTime ldt = LocalDateTime.ofInstant(((Date)value).toInstant(), ZoneId.systemDefault());
-        // because ZoneId will (over)correct historical date times.
-        // see https://www.timeanddate.com/time/zone/netherlands/amsterdam?year=1909
         if (value instanceof Date) {
-            Object dt = getJavaTime(((Date) value));
-            if (dt instanceof LocalTime) {
-                return DateTimeFormatter.ISO_LOCAL_TIME.format(((LocalTime) dt));
-            } else {
-                return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(((LocalDateTime) dt));
-            }
+            return getDateCodec().encode((Date) value);
         } else {
             getListener().reportWarning(currentFile, "codex",
               new AxxessCheckedException("Unexpected Date field type: " + value.getClass()));
@@ -243,56 +511,24 @@ public class DefaultCodex implements Codex {
         }
     }
 
+    private boolean appendDate(Object value, StringBuilder out) {
+        if (value instanceof Date) {
+            getDateCodec().append((Date) value, out);
+            return true;
+        }
+        return append(encodeDate(value), out);
+    }
+
     private Date decodeDate(String value) {
-        // See encodeDate
-        Matcher m = digitPattern.matcher(value);
-        if (value.length() == 8) {
-            int hour = 0;
-            int minute = 0;
-            int second = 0;
-            if (m.find()) {
-                hour = Integer.parseInt(m.group());
-                if (m.find()) {
-                    minute = Integer.parseInt(m.group());
-                    if (m.find()) {
-                        second = Integer.parseInt(m.group());
-                    }
-                }
-            }
-            Calendar calendar = Calendar.getInstance();
-            calendar.clear();
-            calendar.set(1899, 11, 30, hour, minute, second);
-            return new Date(calendar.getTimeInMillis());
-        } else {
-            int year = 0;
-            int month = 0;
-            int day = 1;
-            int hour = 0;
-            int minute = 0;
-            int second = 0;
-            if (m.find()) {
-                year = Integer.parseInt(m.group());
-                if (m.find()) {
-                    month = Integer.parseInt(m.group()) - 1;
-                    if (m.find()) {
-                        day = Integer.parseInt(m.group());
-                        if (m.find()) {
-                            hour = Integer.parseInt(m.group());
-                            if (m.find()) {
-                                minute = Integer.parseInt(m.group());
-                                if (m.find()) {
-                                    second = Integer.parseInt(m.group());
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            Calendar calendar = Calendar.getInstance();
-            calendar.clear();
-            calendar.set(year, month, day, hour, minute, second);
-            return new Date(calendar.getTimeInMillis());
+        return getDateCodec().decode(value);
+    }
+
+    // the time zone is that of the first date encoded or decoded
+    private DateCodec getDateCodec() {
+        if (dateCodec == null) {
+            dateCodec = new DateCodec();
         }
+        return dateCodec;
     }
 
     @SuppressWarnings("unchecked")
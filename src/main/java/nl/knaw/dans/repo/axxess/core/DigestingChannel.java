@@ -0,0 +1,55 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+
+/**
+ * A {@link WritableByteChannel} that computes a digest of all bytes written through it to the wrapped channel.
+ * The digest is final once this channel is closed.
+ */
+public class DigestingChannel implements WritableByteChannel {
+
+    private final WritableByteChannel channel;
+    private final MessageDigest digest;
+    private String hexDigest;
+
+    public DigestingChannel(WritableByteChannel channel, MessageDigest digest) {
+        this.channel = channel;
+        this.digest = digest;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        ByteBuffer view = src.duplicate();
+        int count = channel.write(src);
+        view.limit(view.position() + count);
+        digest.update(view);
+        return count;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (hexDigest == null) {
+            hexDigest = Hex.encodeHexString(digest.digest());
+        }
+        channel.close();
+    }
+
+    /**
+     * Get the digest of the bytes written, as lowercase hex string.
+     *
+     * @return hex digest, or <code>null</code> if this channel was not closed yet
+     */
+    public String getHexDigest() {
+        return hexDigest;
+    }
+}
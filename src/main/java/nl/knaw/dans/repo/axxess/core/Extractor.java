@@ -1,6 +1,7 @@
 package nl.knaw.dans.repo.axxess.core;
 
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
@@ -8,9 +9,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An {@link Extractor} extracts (meta)data from an access database.
@@ -23,11 +29,16 @@ public abstract class Extractor<T extends Extractor> implements ErrorListener {
 
     private ExtractorDef extractorDef = new ExtractorDef();
 
-    private List<Throwable> errorList = new ArrayList<>();
-    private List<Throwable> warningList = new ArrayList<>();
+    // synchronized: errors and warnings may be reported by several worker threads at once
+    private final List<Throwable> errorList = Collections.synchronizedList(new ArrayList<>());
+    private final List<Throwable> warningList = Collections.synchronizedList(new ArrayList<>());
 
     private ErrorListener externalListener;
 
+    private Map<File, String> outputDigests;
+
+    private OutputListener outputListener;
+
     /**
      * Convenience call for getting all settings.
      *
@@ -174,6 +185,17 @@ public abstract class Extractor<T extends Extractor> implements ErrorListener {
         return extractorDef.getCodex(this);
     }
 
+    /**
+     * Can the given {@link Codex} be copied for use on other threads. If not, work that would be done in parallel
+     * is done on one thread.
+     *
+     * @param codex the {@link Codex} to check
+     * @return <code>true</code> if {@link Codex#copy()} returns a copy, <code>false</code> otherwise
+     */
+    protected static boolean canCopy(Codex codex) {
+        return codex.copy() != null;
+    }
+
     /**
      * Use the given {@link CSVFormat} for output csv files.
      * Default is {@link CSVFormat#RFC4180}.
@@ -248,6 +270,33 @@ public abstract class Extractor<T extends Extractor> implements ErrorListener {
         return warningList;
     }
 
+    /**
+     * Compute sha1 digests of output files while they are written and put them in the given map, with the output
+     * file as key. The map should be thread-safe if output files are written concurrently.
+     * Default <code>null</code>, no digests are computed.
+     *
+     * @param outputDigests map to receive digests of output files, may be <code>null</code>
+     * @return this for chaining method calls
+     */
+    @SuppressWarnings("unchecked")
+    public T withOutputDigests(Map<File, String> outputDigests) {
+        this.outputDigests = outputDigests;
+        return (T) this;
+    }
+
+    /**
+     * Report output files to the given {@link OutputListener} before they are written.
+     * Default <code>null</code>, output files are not reported.
+     *
+     * @param outputListener listener for output files, may be <code>null</code>
+     * @return this for chaining method calls
+     */
+    @SuppressWarnings("unchecked")
+    public T withOutputListener(OutputListener outputListener) {
+        this.outputListener = outputListener;
+        return (T) this;
+    }
+
     public void setExternalListener(ErrorListener listener) {
         this.externalListener = listener;
     }
@@ -318,6 +367,46 @@ public abstract class Extractor<T extends Extractor> implements ErrorListener {
         warningList.clear();
     }
 
+    /**
+     * Open a channel for writing the given output file. If a map for output digests was given, the sha1 digest
+     * of the file is put in this map when the channel is closed.
+     *
+     * @param file the output file
+     * @return channel for writing the file
+     * @throws IOException for file system errors
+     * @see #withOutputDigests(Map)
+     * @see #withOutputListener(OutputListener)
+     */
+    protected WritableByteChannel openOutputChannel(File file) throws IOException {
+        reportOutput(file);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        Map<File, String> digests = outputDigests;
+        if (digests == null) {
+            return channel;
+        }
+        return new DigestingChannel(channel, DigestUtils.getSha1Digest()) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                digests.put(file, getHexDigest());
+            }
+        };
+    }
+
+    /**
+     * Report the given output file to the {@link OutputListener}, if any, before it is written.
+     *
+     * @param file the output file
+     * @throws IOException if the listener cannot record the file
+     * @see #withOutputListener(OutputListener)
+     */
+    protected void reportOutput(File file) throws IOException {
+        if (outputListener != null) {
+            outputListener.reportOutput(file);
+        }
+    }
+
     protected File buildPaths(String dirName, String filename) {
         File file = FileUtils.getFile(getTargetDirectory().getAbsolutePath(), dirName, filename);
         File directory = file.getParentFile();
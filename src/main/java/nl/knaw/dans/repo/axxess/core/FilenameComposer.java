@@ -40,6 +40,35 @@ public interface FilenameComposer {
      */
     String getTableDataFilename(Table table);
 
+    /**
+     * Get a file name for a part of the extracted data of the given {@link Table}, when table data is split
+     * in part files. The default implementation inserts <code>.part-0001</code> etc. before the extension of
+     * {@link #getTableDataFilename(Table)}.
+     *
+     * @param table      {@link Table} who's data is being extracted
+     * @param partNumber number of the part, starting at 1
+     * @return a file name for the part file
+     */
+    default String getTableDataPartFilename(Table table, int partNumber) {
+        String filename = getTableDataFilename(table);
+        int dot = filename.lastIndexOf('.');
+        String part = String.format(".part-%04d", partNumber);
+        return dot < 0 ? filename + part : filename.substring(0, dot) + part + filename.substring(dot);
+    }
+
+    /**
+     * Get a file name for a sidecar file, that holds a large binary value of table data outside of the csv files.
+     * Sidecar files are in the directory of the csv files. The default implementation is the given digest with the
+     * extension <code>.bin</code>.
+     *
+     * @param digest hexadecimal sha1 digest of the value
+     * @return a file name for the sidecar file
+     * @see SidecarStore
+     */
+    default String getSidecarFilename(String digest) {
+        return digest + ".bin";
+    }
+
     /**
      * Get a file name for the archive file.
      *
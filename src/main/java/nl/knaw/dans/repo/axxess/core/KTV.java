@@ -75,27 +75,32 @@ public class KTV {
     }
 
     public boolean isDatabaseProp() {
-        return Pattern.matches(ObjectType.DATABASE.pattern(), prefix);
+        return isProp(ObjectType.DATABASE);
     }
 
     public boolean isRelationshipProp() {
-        return Pattern.matches(ObjectType.RELATIONSHIP.pattern(), prefix);
+        return isProp(ObjectType.RELATIONSHIP);
     }
 
     public boolean isQueryProp() {
-        return Pattern.matches(ObjectType.QUERY.pattern(), prefix);
+        return isProp(ObjectType.QUERY);
     }
 
     public boolean isTableProp() {
-        return Pattern.matches(ObjectType.TABLE.pattern(), prefix);
+        return isProp(ObjectType.TABLE);
     }
 
     public boolean isTableIndexProp() {
-        return Pattern.matches(ObjectType.TABLE_INDEX.pattern(), prefix);
+        return isProp(ObjectType.TABLE_INDEX);
     }
 
     public boolean isTableColumnProp() {
-        return Pattern.matches(ObjectType.TABLE_COLUMN.pattern(), prefix);
+        return isProp(ObjectType.TABLE_COLUMN);
+    }
+
+    private boolean isProp(ObjectType objectType) {
+        ObjectPrefix objectPrefix = new ObjectPrefix();
+        return objectPrefix.parse(prefix) && objectPrefix.getType() == objectType;
     }
 
     @Override
@@ -8,13 +8,29 @@ import org.apache.commons.csv.CSVRecord;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+/**
+ * Lines of key, type and value, each with the prefix of the object they describe. Lookups by prefix and key go
+ * through an index that is built on the first lookup and kept up to date by {@link #add(String, DataType, Object)},
+ * {@link #append(KeyTypeValueMatrix)} and {@link #prefixKeys(ObjectType, int...)}. Changes to the list of
+ * {@link #getLines()} drop the index, so that it is rebuilt on the next lookup. Prefixes of lines should not be
+ * changed otherwise.
+ */
 public class KeyTypeValueMatrix {
 
     private List<KTV> ktvLines = new ArrayList<>();
+    // lines by prefix, in the order of the lines; null until the first lookup
+    private Map<String, ObjectLines> index;
+    private final List<KTV> lines = new Lines();
 
     public KeyTypeValueMatrix() {
     }
@@ -31,40 +47,102 @@ public class KeyTypeValueMatrix {
     }
 
     public KeyTypeValueMatrix add(String key, DataType type, Object value) {
-        ktvLines.add(new KTV(key, type, value));
-        return this;
+        return add(new KTV(key, type, value));
     }
 
     public KeyTypeValueMatrix add(CSVRecord record, Codex codex) {
-        ktvLines.add(new KTV(record, codex));
+        return add(new KTV(record, codex));
+    }
+
+    private KeyTypeValueMatrix add(KTV ktv) {
+        ktvLines.add(ktv);
+        if (index != null) {
+            index(ktv);
+        }
         return this;
     }
 
+    /**
+     * Get the first line with the given key of the object with the given type and indexes.
+     *
+     * @param objectType type of the object
+     * @param key        key of the line
+     * @param indexes    indexes of the object, as in {@link ObjectType#prefix(int...)}
+     * @return the line, or <code>null</code> if there is no such line
+     */
     public KTV get(ObjectType objectType, Object key, int... indexes) {
-        String prefix = objectType.prefix(indexes);
-        for (KTV ktv : ktvLines) {
-            if (ktv.getPrefix() != null && ktv.getPrefix().equals(prefix)) {
-                if (ktv.getKey() != null && ktv.getKey().equals(key)) {
-                    return ktv;
-                }
+        ObjectLines lines = getIndex().get(objectType.prefix(indexes));
+        return lines == null || key == null ? null : lines.byKey.get(key);
+    }
+
+    /**
+     * Get the lines of the object with the given type and indexes.
+     *
+     * @param objectType type of the object
+     * @param indexes    indexes of the object, as in {@link ObjectType#prefix(int...)}
+     * @return lines of the object in order, empty if there is no such object
+     */
+    public List<KTV> getLines(ObjectType objectType, int... indexes) {
+        ObjectLines lines = getIndex().get(objectType.prefix(indexes));
+        return lines == null ? Collections.emptyList() : Collections.unmodifiableList(lines.lines);
+    }
+
+    /**
+     * Get the lines of all objects of the given type, by prefix. For instance, the lines of all columns of all
+     * tables for {@link ObjectType#TABLE_COLUMN}.
+     *
+     * @param objectType type of the objects
+     * @return lines by prefix, in order of the first line of each object
+     */
+    public Map<String, List<KTV>> getObjects(ObjectType objectType) {
+        Pattern pattern = Pattern.compile(objectType.pattern());
+        Map<String, List<KTV>> objects = new LinkedHashMap<>();
+        for (Map.Entry<String, ObjectLines> entry : getIndex().entrySet()) {
+            if (entry.getKey() != null && pattern.matcher(entry.getKey()).matches()) {
+                objects.put(entry.getKey(), Collections.unmodifiableList(entry.getValue().lines));
             }
         }
-        return null;
+        return objects;
     }
 
     public KeyTypeValueMatrix append(KeyTypeValueMatrix ktvMatrix) {
         ktvLines.addAll(ktvMatrix.ktvLines);
+        if (index != null) {
+            ktvMatrix.ktvLines.forEach(this::index);
+        }
         return this;
     }
 
     public KeyTypeValueMatrix prefixKeys(ObjectType objectType, int... indexes) {
         String prefix = objectType.prefix(indexes);
         ktvLines.forEach(ktv -> ktv.setPrefix(prefix));
+        index = null;
         return this;
     }
 
+    /**
+     * Get all lines of this matrix. Lines can be added to, removed from or replaced in the returned list.
+     *
+     * @return all lines, in order
+     */
     public List<KTV> getLines() {
-        return ktvLines;
+        return lines;
+    }
+
+    private Map<String, ObjectLines> getIndex() {
+        if (index == null) {
+            index = new LinkedHashMap<>();
+            ktvLines.forEach(this::index);
+        }
+        return index;
+    }
+
+    private void index(KTV ktv) {
+        ObjectLines lines = index.computeIfAbsent(ktv.getPrefix(), prefix -> new ObjectLines());
+        lines.lines.add(ktv);
+        if (ktv.getKey() != null) {
+            lines.byKey.putIfAbsent(ktv.getKey(), ktv);
+        }
     }
 
     public List<String> getPrefixes() {
@@ -93,7 +171,17 @@ public class KeyTypeValueMatrix {
     }
 
     public void printVertical(Appendable out, CSVFormat format) throws IOException {
-        CSVPrinter printer = new CSVPrinter(out, format);
+        printVertical(new CSVPrinter(out, format));
+    }
+
+    /**
+     * Print the lines of this matrix in vertical orientation with the given printer. The printer is not closed,
+     * so that the matrices of several objects can be printed one after the other.
+     *
+     * @param printer the printer to print with
+     * @throws IOException for write errors
+     */
+    public void printVertical(CSVPrinter printer) throws IOException {
         for (KTV ktv : ktvLines) {
             printer.printRecord(ktv.getPrefix(), ktv.getKey(), ktv.getType(), ktv.getValue());
         }
@@ -107,6 +195,48 @@ public class KeyTypeValueMatrix {
         printer.printRecord(getValues());
     }
 
+    // the lines of this matrix, dropping the index on every change
+    private class Lines extends AbstractList<KTV> {
+
+        @Override
+        public KTV get(int i) {
+            return ktvLines.get(i);
+        }
+
+        @Override
+        public int size() {
+            return ktvLines.size();
+        }
+
+        @Override
+        public KTV set(int i, KTV ktv) {
+            index = null;
+            return ktvLines.set(i, ktv);
+        }
+
+        @Override
+        public void add(int i, KTV ktv) {
+            index = null;
+            modCount++;
+            ktvLines.add(i, ktv);
+        }
+
+        @Override
+        public KTV remove(int i) {
+            index = null;
+            modCount++;
+            return ktvLines.remove(i);
+        }
+
+    }
+
+    private static class ObjectLines {
+
+        private final List<KTV> lines = new ArrayList<>();
+        private final Map<Object, KTV> byKey = new HashMap<>();
+
+    }
+
     public enum Orientation {
         HORIZONTAL,
         VERTICAL
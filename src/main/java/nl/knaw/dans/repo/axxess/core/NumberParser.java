@@ -0,0 +1,198 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import java.math.BigDecimal;
+
+/**
+ * Parses the numbers of {@link DefaultCodex}. Plain decimal strings, as written by the codex, are parsed in a single
+ * pass over their characters; small integers come from a cache of boxed values. Floating point numbers of which the
+ * digits fit the significand and the power of ten is exact are computed with one multiplication or division, which
+ * rounds correctly, as in Clinger's fast path. All other strings, including those that do not parse, are left to
+ * {@link Integer#valueOf}, {@link Double#valueOf} and the like, so that results and exceptions are the same as
+ * theirs. Instances are not thread-safe.
+ */
+class NumberParser {
+
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final Integer[] INTEGERS = new Integer[CACHE_HIGH - CACHE_LOW + 1];
+    // exactly representable powers of ten
+    private static final double[] DOUBLE_POW10 = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final float[] FLOAT_POW10 = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+    // largest significands that are exact in a double and a float
+    private static final long DOUBLE_MAX_EXACT = 1L << 53;
+    private static final long FLOAT_MAX_EXACT = 1L << 24;
+    private static final int MAX_DIGITS = 18;
+    private static final long NOT_PARSED = Long.MIN_VALUE;
+
+    static {
+        for (int i = 0; i < INTEGERS.length; i++) {
+            INTEGERS[i] = i + CACHE_LOW;
+        }
+    }
+
+    // digits and exponent of the last parsed decimal, see parseDecimal
+    private long significand;
+    private int exponent;
+    private boolean negative;
+
+    /**
+     * Parse the given string as {@link Integer#valueOf(String)} does.
+     *
+     * @param value the string to parse
+     * @return the integer
+     * @throws NumberFormatException if the string is not an integer
+     */
+    Integer toInteger(String value) {
+        long result = parseInt(value);
+        if (result == NOT_PARSED) {
+            return Integer.valueOf(value);
+        }
+        int i = (int) result;
+        return i >= CACHE_LOW && i <= CACHE_HIGH ? INTEGERS[i - CACHE_LOW] : Integer.valueOf(i);
+    }
+
+    /**
+     * Parse the given string as {@link Byte#valueOf(String)} does.
+     *
+     * @param value the string to parse
+     * @return the byte
+     * @throws NumberFormatException if the string is not a byte
+     */
+    Byte toByte(String value) {
+        long result = parseInt(value);
+        if (result < Byte.MIN_VALUE || result > Byte.MAX_VALUE) {
+            return Byte.valueOf(value);
+        }
+        return (byte) result;
+    }
+
+    // parses [-]digits of at most nine digits, which do not overflow, NOT_PARSED otherwise
+    private static long parseInt(String value) {
+        int length = value.length();
+        boolean negative = length > 1 && value.charAt(0) == '-';
+        if (length == 0 || length > (negative ? 10 : 9)) {
+            return NOT_PARSED;
+        }
+        int result = 0;
+        for (int i = negative ? 1 : 0; i < length; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_PARSED;
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * Parse the given string as {@link Double#valueOf(String)} does.
+     *
+     * @param value the string to parse
+     * @return the double
+     * @throws NumberFormatException if the string is not a double
+     */
+    Double toDouble(String value) {
+        if (parseDecimal(value, true) && significand <= DOUBLE_MAX_EXACT
+          && Math.abs(exponent) < DOUBLE_POW10.length) {
+            double result = exponent < 0
+              ? significand / DOUBLE_POW10[-exponent]
+              : significand * DOUBLE_POW10[exponent];
+            return negative ? -result : result;
+        }
+        return Double.valueOf(value);
+    }
+
+    /**
+     * Parse the given string as {@link Float#valueOf(String)} does.
+     *
+     * @param value the string to parse
+     * @return the float
+     * @throws NumberFormatException if the string is not a float
+     */
+    Float toFloat(String value) {
+        if (parseDecimal(value, true) && significand <= FLOAT_MAX_EXACT
+          && Math.abs(exponent) < FLOAT_POW10.length) {
+            float result = exponent < 0
+              ? significand / FLOAT_POW10[-exponent]
+              : significand * FLOAT_POW10[exponent];
+            return negative ? -result : result;
+        }
+        return Float.valueOf(value);
+    }
+
+    /**
+     * Parse the given string as {@link BigDecimal#BigDecimal(String)} does.
+     *
+     * @param value the string to parse
+     * @return the decimal
+     * @throws NumberFormatException if the string is not a decimal
+     */
+    BigDecimal toBigDecimal(String value) {
+        if (parseDecimal(value, false)) {
+            return BigDecimal.valueOf(negative ? -significand : significand, -exponent);
+        }
+        return new BigDecimal(value);
+    }
+
+    // parses [-]digits[.digits][E[-]digits], false if the string has another form or too many digits
+    private boolean parseDecimal(String value, boolean allowExponent) {
+        int length = value.length();
+        int i = 0;
+        negative = length > 1 && value.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+        long digits = 0;
+        int digitCount = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        int start = i;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits > 0 || c != '0') {
+                    if (++digitCount > MAX_DIGITS) {
+                        return false;
+                    }
+                }
+                digits = digits * 10 + (c - '0');
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        // at least one digit
+        if (i - start == (fraction ? 1 : 0)) {
+            return false;
+        }
+        int exp = 0;
+        if (i < length) {
+            if (!allowExponent || value.charAt(i) != 'E' || ++i == length) {
+                return false;
+            }
+            boolean negativeExp = value.charAt(i) == '-';
+            if (negativeExp && ++i == length) {
+                return false;
+            }
+            for (; i < length; i++) {
+                int digit = value.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || exp > 999) {
+                    return false;
+                }
+                exp = exp * 10 + digit;
+            }
+            if (negativeExp) {
+                exp = -exp;
+            }
+        }
+        significand = digits;
+        exponent = exp - fractionDigits;
+        return true;
+    }
+}
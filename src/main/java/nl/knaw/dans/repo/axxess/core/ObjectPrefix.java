@@ -0,0 +1,107 @@
+package nl.knaw.dans.repo.axxess.core;
+
+/**
+ * A parsed prefix of a metadata line, like <code>[T12][C3]</code>: the {@link ObjectType} and the indexes of the
+ * object the line describes. A prefix is parsed in one pass over its characters; one instance can be reused for
+ * all lines of a metadata file.
+ */
+public class ObjectPrefix {
+
+    private ObjectType type;
+    private int firstIndex = -1;
+    private int secondIndex = -1;
+    private int position;
+
+    /**
+     * Parse the given prefix. The prefixes <code>[EM]</code> and <code>[DB]</code> give no indexes; the prefixes of
+     * relationships, queries and tables give one, and the prefixes of indexes and columns of tables give two. An
+     * index that is absent, as in <code>[T]</code>, is -1.
+     *
+     * @param prefix the prefix to parse
+     * @return <code>true</code> if the prefix is the prefix of an {@link ObjectType}, <code>false</code> otherwise
+     */
+    public boolean parse(String prefix) {
+        type = null;
+        firstIndex = -1;
+        secondIndex = -1;
+        int length = prefix == null ? 0 : prefix.length();
+        if (length < 3 || prefix.charAt(0) != '[') {
+            return false;
+        }
+        ObjectType parsedType;
+        char c = prefix.charAt(1);
+        if (c == 'E' || c == 'D') {
+            parsedType = length != 4 ? null
+              : c == 'E' && prefix.startsWith("M]", 2) ? ObjectType.EXTRACTION_METADATA
+              : c == 'D' && prefix.startsWith("B]", 2) ? ObjectType.DATABASE
+              : null;
+        } else if (c == 'R' || c == 'Q' || c == 'T') {
+            position = 2;
+            firstIndex = parseIndex(prefix);
+            if (firstIndex == -2) {
+                parsedType = null;
+            } else if (position == length) {
+                parsedType = c == 'R' ? ObjectType.RELATIONSHIP : c == 'Q' ? ObjectType.QUERY : ObjectType.TABLE;
+            } else if (c == 'T' && length - position >= 3 && prefix.charAt(position) == '[') {
+                char d = prefix.charAt(position + 1);
+                position += 2;
+                secondIndex = parseIndex(prefix);
+                parsedType = secondIndex == -2 || position != length ? null
+                  : d == 'X' ? ObjectType.TABLE_INDEX
+                  : d == 'C' ? ObjectType.TABLE_COLUMN
+                  : null;
+            } else {
+                parsedType = null;
+            }
+        } else {
+            parsedType = null;
+        }
+        if (parsedType == null) {
+            firstIndex = -1;
+            secondIndex = -1;
+            return false;
+        }
+        type = parsedType;
+        return true;
+    }
+
+    // digits from position up to and including ']'; -1 for no digits, -2 for no ']' or an index out of range
+    private int parseIndex(String prefix) {
+        int length = prefix.length();
+        int index = -1;
+        while (position < length) {
+            char c = prefix.charAt(position++);
+            if (c == ']') {
+                return index;
+            } else if (c < '0' || c > '9') {
+                return -2;
+            }
+            int digit = c - '0';
+            if (index == -1) {
+                index = digit;
+            } else if (index > (Integer.MAX_VALUE - digit) / 10) {
+                return -2;
+            } else {
+                index = index * 10 + digit;
+            }
+        }
+        return -2;
+    }
+
+    /**
+     * Get the type of the last parsed prefix.
+     *
+     * @return the type, or <code>null</code> if the last prefix was not the prefix of an {@link ObjectType}
+     */
+    public ObjectType getType() {
+        return type;
+    }
+
+    public int getFirstIndex() {
+        return firstIndex;
+    }
+
+    public int getSecondIndex() {
+        return secondIndex;
+    }
+}
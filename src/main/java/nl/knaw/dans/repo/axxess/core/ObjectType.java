@@ -24,11 +24,11 @@ public enum ObjectType {
         } else if (this == DATABASE) {
             return "[DB]";
         } else if (this == TABLE_INDEX) {
-            return String.format("[T%d][X%d]", indexes[0], indexes[1]);
+            return "[T" + indexes[0] + "][X" + indexes[1] + "]";
         } else if (this == TABLE_COLUMN) {
-            return String.format("[T%d][C%d]", indexes[0], indexes[1]);
+            return "[T" + indexes[0] + "][C" + indexes[1] + "]";
         } else {
-            return String.format("[%s%d]", abrreviation, indexes[0]);
+            return "[" + abrreviation + indexes[0] + "]";
         }
     }
 
@@ -0,0 +1,12 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Gets notified of output files before they are written.
+ */
+public interface OutputListener {
+
+    void reportOutput(File file) throws IOException;
+}
@@ -0,0 +1,342 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import java.math.BigInteger;
+
+/**
+ * Appends the shortest decimal that rounds to a given double or float, with the Schubfach algorithm of
+ * Raffaello Giulietti, <i>The Schubfach way to render doubles</i> (2021). The format is that of
+ * {@link Double#toString(double)} and {@link Float#toString(float)}: plain notation from 10<sup>-3</sup> up to
+ * 10<sup>7</sup> and computerized scientific notation otherwise, with at least one digit after the decimal point.
+ * The digits are those of {@link Double#toString(double)} as of Java 19. Earlier versions print more digits than
+ * needed for some values; both parse back to the same value.
+ * <p>
+ * Digits are written straight into the given {@link StringBuilder}, without intermediate objects.</p>
+ */
+final class ShortestDecimal {
+
+    private static final long MASK_63 = (1L << 63) - 1;
+    private static final long MASK_32 = (1L << 32) - 1;
+
+    private static final int DOUBLE_P = 53;
+    private static final int DOUBLE_Q_MIN = -1074;
+    private static final long DOUBLE_C_MIN = 1L << DOUBLE_P - 1;
+    private static final int DOUBLE_BQ_MASK = (1 << 11) - 1;
+    private static final long DOUBLE_T_MASK = (1L << DOUBLE_P - 1) - 1;
+    private static final int DOUBLE_C_TINY = 3;
+
+    private static final int FLOAT_P = 24;
+    private static final int FLOAT_Q_MIN = -149;
+    private static final int FLOAT_C_MIN = 1 << FLOAT_P - 1;
+    private static final int FLOAT_BQ_MASK = (1 << 8) - 1;
+    private static final int FLOAT_T_MASK = (1 << FLOAT_P - 1) - 1;
+    private static final int FLOAT_C_TINY = 8;
+
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+
+    // g1 and g0 for K_MIN <= k <= K_MAX, see g1(int)
+    private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+    private static final long[] POW10 = new long[19];
+
+    static {
+        BigInteger ten = BigInteger.TEN;
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            // 10^-k = beta 2^r with 2^125 <= beta < 2^126, g = floor(beta) + 1
+            BigInteger floor;
+            if (k <= 0) {
+                BigInteger n = ten.pow(-k);
+                int r = n.bitLength() - 126;
+                floor = r >= 0 ? n.shiftRight(r) : n.shiftLeft(-r);
+            } else {
+                BigInteger d = ten.pow(k);
+                floor = BigInteger.ONE.shiftLeft(125 + d.bitLength()).divide(d);
+            }
+            BigInteger g = floor.add(BigInteger.ONE);
+            G[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+            G[2 * (k - K_MIN) + 1] = g.longValue() & MASK_63;
+        }
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = 10 * POW10[i - 1];
+        }
+    }
+
+    private ShortestDecimal() {
+    }
+
+    /**
+     * Append the given double, as {@link Double#toString(double)} does.
+     *
+     * @param v   the double
+     * @param out buffer to append to
+     * @return the buffer
+     */
+    static StringBuilder append(double v, StringBuilder out) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & DOUBLE_T_MASK;
+        int bq = (int) (bits >>> DOUBLE_P - 1) & DOUBLE_BQ_MASK;
+        if (bq == DOUBLE_BQ_MASK) {
+            return out.append(t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity");
+        }
+        if (bits < 0) {
+            out.append('-');
+        }
+        if (bq != 0) {
+            // normal value, v = c 2^q with q = -mq
+            int mq = -DOUBLE_Q_MIN + 1 - bq;
+            long c = DOUBLE_C_MIN | t;
+            if (0 < mq && mq < DOUBLE_P) {
+                long f = c >> mq;
+                if (f << mq == c) {
+                    // an integer
+                    return appendDecimal(f, 0, out);
+                }
+            }
+            return toDecimal(-mq, c, 0, out);
+        }
+        if (t != 0) {
+            // subnormal value
+            return t < DOUBLE_C_TINY ? toDecimal(DOUBLE_Q_MIN, 10 * t, -1, out) : toDecimal(DOUBLE_Q_MIN, t, 0, out);
+        }
+        return out.append("0.0");
+    }
+
+    private static StringBuilder toDecimal(int q, long c, int dk, StringBuilder out) {
+        int odd = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != DOUBLE_C_MIN || q == DOUBLE_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            // the rounding interval is asymmetric at a power of 2
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+        long g1 = g1(k);
+        long g0 = g0(k);
+
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // is one digit less in the rounding interval
+            long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + odd <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + odd <= vbr;
+            if (upin != wpin) {
+                return appendDecimal(upin ? sp10 : tp10, k, out);
+            }
+        }
+        long t = s + 1;
+        boolean uin = vbl + odd <= s << 2;
+        boolean win = (t << 2) + odd <= vbr;
+        if (uin != win) {
+            return appendDecimal(uin ? s : t, k + dk, out);
+        }
+        // both in the rounding interval, take the closest, or the even one
+        long cmp = vb - (s + t << 1);
+        return appendDecimal(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, out);
+    }
+
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    /**
+     * Append the given float, as {@link Float#toString(float)} does.
+     *
+     * @param v   the float
+     * @param out buffer to append to
+     * @return the buffer
+     */
+    static StringBuilder append(float v, StringBuilder out) {
+        int bits = Float.floatToRawIntBits(v);
+        int t = bits & FLOAT_T_MASK;
+        int bq = (bits >>> FLOAT_P - 1) & FLOAT_BQ_MASK;
+        if (bq == FLOAT_BQ_MASK) {
+            return out.append(t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity");
+        }
+        if (bits < 0) {
+            out.append('-');
+        }
+        if (bq != 0) {
+            int mq = -FLOAT_Q_MIN + 1 - bq;
+            int c = FLOAT_C_MIN | t;
+            if (0 < mq && mq < FLOAT_P) {
+                int f = c >> mq;
+                if (f << mq == c) {
+                    return appendDecimal(f, 0, out);
+                }
+            }
+            return toDecimal(-mq, c, 0, out);
+        }
+        if (t != 0) {
+            return t < FLOAT_C_TINY ? toDecimal(FLOAT_Q_MIN, 10 * t, -1, out) : toDecimal(FLOAT_Q_MIN, t, 0, out);
+        }
+        return out.append("0.0");
+    }
+
+    private static StringBuilder toDecimal(int q, int c, int dk, StringBuilder out) {
+        int odd = c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != FLOAT_C_MIN || q == FLOAT_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 33;
+        long g = g1(k) + 1;
+
+        int vb = rop(g, cb << h);
+        int vbl = rop(g, cbl << h);
+        int vbr = rop(g, cbr << h);
+
+        int s = vb >> 2;
+        if (s >= 100) {
+            int sp10 = 10 * (int) (s * 1_717_986_919L >>> 34);
+            int tp10 = sp10 + 10;
+            boolean upin = vbl + odd <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + odd <= vbr;
+            if (upin != wpin) {
+                return appendDecimal(upin ? sp10 : tp10, k, out);
+            }
+        }
+        int t = s + 1;
+        boolean uin = vbl + odd <= s << 2;
+        boolean win = (t << 2) + odd <= vbr;
+        if (uin != win) {
+            return appendDecimal(uin ? s : t, k + dk, out);
+        }
+        int cmp = vb - (s + t << 1);
+        return appendDecimal(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, out);
+    }
+
+    private static int rop(long g, long cp) {
+        long x1 = multiplyHigh(g, cp);
+        long vbp = x1 >>> 31;
+        return (int) (vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+    }
+
+    // floor(e log10(2))
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    // floor(e log10(2) + log10(3/4))
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    // floor(e log2(10))
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    // 10^-k = beta 2^r with 2^125 <= beta < 2^126, g = floor(beta) + 1, g1 = floor(g 2^-63)
+    private static long g1(int k) {
+        return G[2 * (k - K_MIN)];
+    }
+
+    // g0 = g mod 2^63
+    private static long g0(int k) {
+        return G[2 * (k - K_MIN) + 1];
+    }
+
+    // Math.multiplyHigh of Java 9
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & MASK_32;
+        long y1 = y >> 32;
+        long y2 = y & MASK_32;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & MASK_32;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    // f 10^e, f > 0, in the format of Double.toString
+    private static StringBuilder appendDecimal(long f, int e, StringBuilder out) {
+        // strip trailing zeros, with big steps first
+        while (f % 100_000_000 == 0) {
+            f /= 100_000_000;
+            e += 8;
+        }
+        if (f % 10_000 == 0) {
+            f /= 10_000;
+            e += 4;
+        }
+        if (f % 100 == 0) {
+            f /= 100;
+            e += 2;
+        }
+        if (f % 10 == 0) {
+            f /= 10;
+            e += 1;
+        }
+        // 10^(len - 1) <= f < 10^len
+        int len = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+        if (f >= POW10[len]) {
+            len++;
+        }
+        // f 10^e = 0.f 10^exponent
+        int exponent = e + len;
+        if (0 < exponent && exponent <= 7) {
+            if (len <= exponent) {
+                appendDigits(f, len, out);
+                for (int i = len; i < exponent; i++) {
+                    out.append('0');
+                }
+                return out.append(".0");
+            }
+            long low = POW10[len - exponent];
+            appendDigits(f / low, exponent, out).append('.');
+            return appendDigits(f % low, len - exponent, out);
+        }
+        if (-3 < exponent && exponent <= 0) {
+            out.append("0.");
+            for (int i = exponent; i < 0; i++) {
+                out.append('0');
+            }
+            return appendDigits(f, len, out);
+        }
+        long low = POW10[len - 1];
+        appendDigits(f / low, 1, out).append('.');
+        if (len == 1) {
+            out.append('0');
+        } else {
+            appendDigits(f % low, len - 1, out);
+        }
+        return out.append('E').append(exponent - 1);
+    }
+
+    // the last count digits of f, with leading zeros
+    private static StringBuilder appendDigits(long f, int count, StringBuilder out) {
+        int start = out.length();
+        out.setLength(start + count);
+        for (int i = start + count - 1; i >= start; i--) {
+            out.setCharAt(i, (char) ('0' + f % 10));
+            f /= 10;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,177 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps large binary values of table data in sidecar files, next to the csv files. A sidecar file is named after
+ * the sha1 digest of its value by {@link FilenameComposer#getSidecarFilename(String)}, so equal values are stored
+ * once. The cell of a stored value holds a reference: <code>sha1:</code> followed by the digest. References are
+ * told apart from {@link java.util.Base64} encoded values by the colon, which is not in the Base64 alphabet.
+ * <p>
+ * An extraction that is resumed can refer to sidecar files written before it was interrupted. These are listed with
+ * the files written by the store after {@link #includeEarlierFiles()}.</p>
+ * <p>
+ * Values can be stored from several threads at the same time.</p>
+ */
+public class SidecarStore {
+
+    /**
+     * Opens the channel for a sidecar file.
+     */
+    public interface SidecarOpener {
+
+        WritableByteChannel open(File file) throws IOException;
+
+    }
+
+    public static final String REFERENCE_PREFIX = "sha1:";
+    private static final int DIGEST_LENGTH = 40;
+
+    private final File directory;
+    private final FilenameComposer composer;
+    private final long threshold;
+    private final SidecarOpener opener;
+    private final Map<String, File> files = new ConcurrentHashMap<>();
+    private volatile boolean earlierFiles;
+
+    /**
+     * Create a store for values of more than <code>threshold</code> bytes.
+     *
+     * @param directory directory of the csv files
+     * @param composer  composes the names of sidecar files
+     * @param threshold size in bytes above which values are stored
+     * @param opener    opens the channels for sidecar files
+     */
+    public SidecarStore(File directory, FilenameComposer composer, long threshold, SidecarOpener opener) {
+        this.directory = directory;
+        this.composer = composer;
+        this.threshold = threshold;
+        this.opener = opener;
+    }
+
+    /**
+     * Should the given value be stored in a sidecar file.
+     *
+     * @param value the value
+     * @return <code>true</code> if the value is larger than the threshold of this store
+     */
+    public boolean accepts(byte[] value) {
+        return value.length > threshold;
+    }
+
+    /**
+     * Store the given value in a sidecar file, unless a file with the same value was stored before.
+     *
+     * @param value the value to store
+     * @return the reference to the value
+     * @throws IOException if the sidecar file could not be written
+     */
+    public String store(byte[] value) throws IOException {
+        String digest = DigestUtils.sha1Hex(value);
+        File file = new File(directory, composer.getSidecarFilename(digest));
+        if (files.putIfAbsent(digest, file) == null) {
+            directory.mkdirs();
+            try (WritableByteChannel channel = opener.open(file)) {
+                ByteBuffer buffer = ByteBuffer.wrap(value);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                files.remove(digest);
+                throw e;
+            }
+        }
+        return REFERENCE_PREFIX + digest;
+    }
+
+    /**
+     * List the sidecar files that are in the directory of this store before it writes any, with the files written
+     * by this store. Called when an interrupted extraction is resumed, for the values it wrote before.
+     */
+    public void includeEarlierFiles() {
+        earlierFiles = true;
+    }
+
+    /**
+     * Get the sidecar files written by this store, in the order of their names. After
+     * {@link #includeEarlierFiles()}, these are all sidecar files in the directory of this store.
+     *
+     * @return the sidecar files
+     */
+    public List<File> getFiles() {
+        Set<File> sidecarFiles = new HashSet<>(files.values());
+        File[] directoryFiles = earlierFiles ? directory.listFiles(file -> isSidecarFile(file, composer)) : null;
+        if (directoryFiles != null) {
+            sidecarFiles.addAll(Arrays.asList(directoryFiles));
+        }
+        List<File> sortedFiles = new ArrayList<>(sidecarFiles);
+        sortedFiles.sort(Comparator.comparing(File::getName));
+        return sortedFiles;
+    }
+
+    /**
+     * Is the given file a sidecar file, named after a digest by the given composer.
+     *
+     * @param file     a file
+     * @param composer composes the names of sidecar files
+     * @return <code>true</code> if the file is a sidecar file, <code>false</code> otherwise
+     */
+    public static boolean isSidecarFile(File file, FilenameComposer composer) {
+        String name = file.getName();
+        for (int start = 0; start + DIGEST_LENGTH <= name.length(); start++) {
+            String digest = name.substring(start, start + DIGEST_LENGTH);
+            if (isDigest(digest) && composer.getSidecarFilename(digest).equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDigest(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Is the given cell value a reference to a sidecar file.
+     *
+     * @param value a cell value
+     * @return <code>true</code> if the value is a reference, <code>false</code> otherwise
+     */
+    public static boolean isReference(String value) {
+        return value.length() == REFERENCE_PREFIX.length() + DIGEST_LENGTH && value.startsWith(REFERENCE_PREFIX);
+    }
+
+    /**
+     * Read the value of the given reference.
+     *
+     * @param directory directory of the csv files
+     * @param composer  composes the names of sidecar files
+     * @param reference the reference to the value
+     * @return the value
+     * @throws IOException if the sidecar file could not be read
+     */
+    public static byte[] read(File directory, FilenameComposer composer, String reference) throws IOException {
+        String digest = reference.substring(REFERENCE_PREFIX.length());
+        return Files.readAllBytes(new File(directory, composer.getSidecarFilename(digest)).toPath());
+    }
+}
@@ -9,16 +9,20 @@ import com.healthmarketscience.jackcess.Relationship;
 import com.healthmarketscience.jackcess.RelationshipBuilder;
 import com.healthmarketscience.jackcess.Table;
 import com.healthmarketscience.jackcess.TableBuilder;
+import com.healthmarketscience.jackcess.util.MemFileChannel;
 import nl.knaw.dans.repo.axxess.core.Axxess;
 import nl.knaw.dans.repo.axxess.core.AxxessException;
 import nl.knaw.dans.repo.axxess.core.Codex;
 import nl.knaw.dans.repo.axxess.core.Converter;
+import nl.knaw.dans.repo.axxess.core.DigestingChannel;
 import nl.knaw.dans.repo.axxess.core.KTV;
+import nl.knaw.dans.repo.axxess.core.SidecarStore;
 import nl.knaw.dans.repo.axxess.csv2acc.xdb.XColumn;
 import nl.knaw.dans.repo.axxess.csv2acc.xdb.XDatabase;
 import nl.knaw.dans.repo.axxess.csv2acc.xdb.XIndex;
 import nl.knaw.dans.repo.axxess.csv2acc.xdb.XRelationship;
 import nl.knaw.dans.repo.axxess.csv2acc.xdb.XTable;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.slf4j.Logger;
@@ -28,10 +32,25 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Csv2AxxessConverter extends Converter<Csv2AxxessConverter> implements Axxess {
 
@@ -44,6 +63,8 @@ public class Csv2AxxessConverter extends Converter<Csv2AxxessConverter> implemen
     private boolean includeIndexes = true;
     private boolean includeRelationships = true;
     private boolean autoNumberColumns;
+    private long inMemoryLimit;
+    private int partParallelism = 1;
 
     private String currentDatabaseFormat = null;
     private String currentTableName = null;
@@ -109,6 +130,46 @@ public class Csv2AxxessConverter extends Converter<Csv2AxxessConverter> implemen
         return this;
     }
 
+    /**
+     * Build databases with csv sources of up to <code>inMemoryLimit</code> bytes in memory, and write them to
+     * file in one go. The manifest digest of these databases is computed while writing. Larger databases are
+     * built on file and read again for the manifest. A database built in memory can be larger than its csv
+     * sources, and is held on the heap until it is written.
+     * Default <code>0</code>, databases are always built on file.
+     *
+     * @param inMemoryLimit maximum size in bytes of the csv files of a database built in memory, 0 to always
+     *                      build on file
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>inMemoryLimit</code> is negative
+     */
+    public Csv2AxxessConverter withInMemoryLimit(long inMemoryLimit) {
+        if (inMemoryLimit < 0) {
+            throw new IllegalArgumentException("In-memory limit cannot be negative: " + inMemoryLimit);
+        }
+        this.inMemoryLimit = inMemoryLimit;
+        return this;
+    }
+
+    /**
+     * Parse up to <code>partParallelism</code> part files of a table at the same time, each with its own copy of
+     * the {@link Codex} in use. Rows are added to the table in the order of the parts, as listed in the metadata.
+     * Decoded rows are handed over in batches, through a queue of a few batches per part being parsed, so that
+     * the size of the parts does not matter for memory use.
+     * Has no effect on tables that were not split in part files.
+     * Default <code>1</code>, parts are parsed one after the other.
+     *
+     * @param partParallelism number of part files to parse concurrently, at least 1
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>partParallelism</code> is less than 1
+     */
+    public Csv2AxxessConverter withPartParallelism(int partParallelism) {
+        if (partParallelism < 1) {
+            throw new IllegalArgumentException("Part parallelism should be at least 1, not " + partParallelism);
+        }
+        this.partParallelism = partParallelism;
+        return this;
+    }
+
     @Override
     public String getDefaultOutputDirectory() {
         return DEFAULT_OUTPUT_DIRECTORY;
@@ -199,14 +260,19 @@ public class Csv2AxxessConverter extends Converter<Csv2AxxessConverter> implemen
             targetDir.mkdirs();
         }
 
-        if (!targetFile.exists()) {
+        MemFileChannel memChannel = null;
+        if (getSourceSize(mdFile, xdb) <= inMemoryLimit) {
+            memChannel = MemFileChannel.newChannel();
+        } else if (!targetFile.exists()) {
             targetFile.createNewFile();
         }
-        LOG.info("Trying to build database with format {} at {}", targetFormat, targetFile.getAbsolutePath());
+        LOG.info("Trying to build database with format {} at {}{}", targetFormat, targetFile.getAbsolutePath(),
+          memChannel == null ? "" : " (in memory)");
         Database db = null;
         try {
             DatabaseBuilder databaseBuilder = new DatabaseBuilder()
               .setFile(targetFile)
+              .setChannel(memChannel)
               .setFileFormat(targetFormat);
 
             // Not putting database properties - Access will not always open databases with these properties set.
@@ -288,8 +354,7 @@ public class Csv2AxxessConverter extends Converter<Csv2AxxessConverter> implemen
                 Table table = tableBuilder.toTable(db);
                 LOG.debug("Finished building table '{}'", currentTableName);
 
-                File tableDataFile = getFilenameComposer().getTableDataFileFor(mdFile, currentTableName);
-                parseTableData(tableDataFile, table, xt, getCodex());
+                parseTableData(getTableDataFiles(mdFile, xt), table, xt, getCodex());
                 currentTableName = null;
             }
 
@@ -337,10 +402,15 @@ public class Csv2AxxessConverter extends Converter<Csv2AxxessConverter> implemen
             }
         }
 
+        Map<File, String> digests = new HashMap<>();
+        if (memChannel != null) {
+            writeDatabase(memChannel, targetFile, digests);
+        }
+
         List<File> targetFiles = new ArrayList<>();
         if (isIncludingManifest()) {
             targetFiles.add(targetFile);
-            addManifest(targetFiles);
+            addManifest(targetFiles, digests);
         }
         resultFiles.addAll(targetFiles);
 
@@ -350,6 +420,49 @@ public class Csv2AxxessConverter extends Converter<Csv2AxxessConverter> implemen
         currentDatabaseFormat = null;
     }
 
+    private long getSourceSize(File mdFile, XDatabase xdb) {
+        long size = mdFile.length();
+        for (XTable xt : xdb.getTables()) {
+            for (File tableDataFile : getTableDataFiles(mdFile, xt)) {
+                size += tableDataFile.length();
+            }
+        }
+        return size;
+    }
+
+    // part files are listed in the metadata of their table
+    private List<File> getTableDataFiles(File mdFile, XTable xt) {
+        List<String> partFilenames = xt.getList(TABLE_PART_FILES);
+        if (partFilenames.isEmpty()) {
+            String tableName = xt.getString(TABLE_NAME);
+            return Collections.singletonList(getFilenameComposer().getTableDataFileFor(mdFile, tableName));
+        }
+        List<File> partFiles = new ArrayList<>();
+        for (String partFilename : partFilenames) {
+            partFiles.add(new File(mdFile.getParentFile(), partFilename));
+        }
+        return partFiles;
+    }
+
+    private void writeDatabase(MemFileChannel memChannel, File targetFile, Map<File, String> digests)
+      throws IOException {
+        FileChannel fileChannel = FileChannel.open(targetFile.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            if (isIncludingManifest()) {
+                DigestingChannel out = new DigestingChannel(fileChannel, DigestUtils.getSha1Digest());
+                memChannel.transferTo(out);
+                out.close();
+                digests.put(targetFile, out.getHexDigest());
+            } else {
+                memChannel.transferTo(fileChannel);
+            }
+        } finally {
+            fileChannel.close();
+            memChannel.close();
+        }
+    }
+
     private Database.FileFormat getTargetFileFormat() {
         if (targetFormat == null) {
             targetFormat = Database.FileFormat.V2010;
@@ -357,25 +470,163 @@ public class Csv2AxxessConverter extends Converter<Csv2AxxessConverter> implemen
         return targetFormat;
     }
 
-    private void parseTableData(File tableDataFile, Table table, XTable xt, Codex codex) throws IOException {
+    private void parseTableData(List<File> tableDataFiles, Table table, XTable xt, Codex codex)
+      throws IOException {
+        int recordCount = 0;
+        if (partParallelism > 1 && tableDataFiles.size() > 1 && canCopy(codex)) {
+            recordCount = parseTableParts(tableDataFiles, table, xt, codex);
+        } else {
+            for (File tableDataFile : tableDataFiles) {
+                recordCount += parseTableData(tableDataFile, xt, codex, table::addRow);
+            }
+        }
+        LOG.debug("Finished adding {} rows to table '{}'", recordCount, table.getName());
+    }
+
+    // parses parts concurrently, rows are added on the calling thread in the order of the parts
+    private int parseTableParts(List<File> partFiles, Table table, XTable xt, Codex codex) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(partParallelism, partFiles.size()));
+        Deque<PartRows> pending = new ArrayDeque<>();
+        int recordCount = 0;
+        try {
+            int next = 0;
+            while (next < partFiles.size() || !pending.isEmpty()) {
+                while (next < partFiles.size() && pending.size() < partParallelism) {
+                    File partFile = partFiles.get(next++);
+                    Codex partCodex = codex.copy();
+                    partCodex.setCurrentFile(partFile);
+                    PartRows part = new PartRows();
+                    part.future = executor.submit(() -> {
+                        try {
+                            parseTableData(partFile, xt, partCodex, part);
+                            part.flush();
+                        } finally {
+                            part.end();
+                        }
+                        return null;
+                    });
+                    pending.add(part);
+                }
+                PartRows part = pending.poll();
+                List<Object[]> rows;
+                while ((rows = part.batches.take()) != PartRows.END) {
+                    table.addRows(rows);
+                    recordCount += rows.size();
+                }
+                // throws the exception of a part that failed
+                part.future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Exception while parsing parts of table " + table.getName(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing parts of table " + table.getName(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return recordCount;
+    }
+
+    private int parseTableData(File tableDataFile, XTable xt, Codex codex, RowSink rows) throws IOException {
         LOG.debug("Trying to parse table data from {}", tableDataFile);
-        InputStreamReader reader = new InputStreamReader(new FileInputStream(tableDataFile), getSourceEncoding());
-        CSVParser parser = new CSVParser(reader, getCSVFormat());
         int recordCount = 0;
-        for (CSVRecord record : parser) {
-            if (record.getRecordNumber() > 1) { // first line is column header
-                Object[] data = new Object[xt.getColumns().size()];
-                Iterator<String> iterator = record.iterator();
-                for (int i = 0; i < xt.getColumns().size(); i++) {
-                    XColumn xc = xt.getColumns().get(i);
-                    DataType type = xc.getDataType(C_DATA_TYPE);
-                    data[i] = codex.decode(type, iterator.next());
+        // types and decoders are looked up once per column
+        int columnCount = xt.getColumns().size();
+        DataType[] types = new DataType[columnCount];
+        Codex.Decoder[] decoders = new Codex.Decoder[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            types[i] = xt.getColumns().get(i).getDataType(C_DATA_TYPE);
+            decoders[i] = codex.getDecoder(types[i]);
+            if (types[i] == DataType.OLE) {
+                decoders[i] = newSidecarDecoder(tableDataFile.getParentFile(), types[i], decoders[i], codex);
+            }
+        }
+        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(tableDataFile),
+          getSourceEncoding()); CSVParser parser = new CSVParser(reader, getCSVFormat())) {
+            for (CSVRecord record : parser) {
+                if (record.getRecordNumber() > 1) { // first line is column header
+                    Object[] data = new Object[columnCount];
+                    Iterator<String> iterator = record.iterator();
+                    for (int i = 0; i < columnCount; i++) {
+                        String value = iterator.next();
+                        data[i] = decoders[i] == null ? codex.decode(types[i], value) : decoders[i].decode(value);
+                    }
+                    rows.add(data);
+                    recordCount++;
                 }
-                table.addRow(data);
-                recordCount++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return recordCount;
+    }
+
+    // reads references to sidecar files, other values are decoded by the codex
+    private Codex.Decoder newSidecarDecoder(File directory, DataType type, Codex.Decoder decoder, Codex codex) {
+        return value -> {
+            if (value != null && SidecarStore.isReference(value)) {
+                try {
+                    return SidecarStore.read(directory, getFilenameComposer(), value);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return decoder == null ? codex.decode(type, value) : decoder.decode(value);
+        };
+    }
+
+    /**
+     * Receives the decoded rows of a csv file.
+     */
+    private interface RowSink {
+
+        void add(Object[] row) throws IOException;
+
+    }
+
+    /**
+     * Hands the rows of a part file over in batches, through a bounded queue. The queue ends with {@link #END}.
+     */
+    private static class PartRows implements RowSink {
+
+        private static final int BATCH_SIZE = 1000;
+        private static final int QUEUED_BATCHES = 4;
+        private static final List<Object[]> END = Collections.emptyList();
+
+        private final BlockingQueue<List<Object[]>> batches = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+        private List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        private Future<?> future;
+
+        @Override
+        public void add(Object[] row) throws IOException {
+            batch.add(row);
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            if (!batch.isEmpty()) {
+                put(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+
+        private void end() throws IOException {
+            put(END);
+        }
+
+        private void put(List<Object[]> rows) throws IOException {
+            try {
+                batches.put(rows);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while handing over rows");
             }
         }
-        LOG.debug("Finished adding {} rows to table '{}'", recordCount, table.getName());
     }
 
 }
@@ -4,6 +4,7 @@ import nl.knaw.dans.repo.axxess.core.Axxess;
 import nl.knaw.dans.repo.axxess.core.Codex;
 import nl.knaw.dans.repo.axxess.core.DefaultCodex;
 import nl.knaw.dans.repo.axxess.core.KTV;
+import nl.knaw.dans.repo.axxess.core.ObjectPrefix;
 import nl.knaw.dans.repo.axxess.csv2acc.xdb.XColumn;
 import nl.knaw.dans.repo.axxess.csv2acc.xdb.XDatabase;
 import nl.knaw.dans.repo.axxess.csv2acc.xdb.XIndex;
@@ -67,73 +68,81 @@ public class MetadataParser {
             int idxti = -1;
 
             int recordCount = 0;
+            ObjectPrefix prefix = new ObjectPrefix();
             CSVParser parser = new CSVParser(reader, csvFormat);
             for (CSVRecord record : parser) {
-                if (record.getRecordNumber() > 1) { // first line is header
+                if (record.getRecordNumber() > 1 && prefix.parse(record.get(0))) { // first line is header
                     KTV ktv = new KTV(record, codex);
-                    int index = ktv.getFirstIndex();
-                    if (ktv.isDatabaseProp()) {
-                        xdb.addKtv(ktv);
-                    } else if (ktv.isRelationshipProp()) {
-                        if (idxr != index) {
-                            idxr = index;
-                            xr = null;
-                        }
-                        if (xr == null) {
-                            xr = new XRelationship();
-                            xdb.addRelationship(xr);
-                        }
-                        xr.addKtv(ktv);
-                    } else if (ktv.isQueryProp()) {
-                        if (idxq != index) {
-                            idxq = index;
-                            xq = null;
-                        }
-                        if (xq == null) {
-                            xq = new XQuery();
-                            xdb.addQuery(xq);
-                        }
-                        xq.addKtv(ktv);
-                    } else if (ktv.isTableProp()) {
-                        if (idxt != index) {
-                            idxt = index;
-                            idxti = -1;
-                            idxtc = -1;
-                            xt = null;
-                        }
-                        if (xt == null) {
-                            xt = new XTable();
-                            xdb.addTable(xt);
-                        }
-                        xt.addKtv(ktv);
-                    } else if (ktv.isTableIndexProp()) {
-                        int secondIndex = ktv.getSecondIndex();
-                        if (idxti != secondIndex) {
-                            idxti = secondIndex;
-                            xti = null;
-                        }
-                        if (xti == null) {
-                            xti = new XIndex();
-                            if (xt == null) {
-                                throw new IOException("Bad format: Index without Table metadata");
+                    int index = prefix.getFirstIndex();
+                    switch (prefix.getType()) {
+                        case DATABASE:
+                            xdb.addKtv(ktv);
+                            break;
+                        case RELATIONSHIP:
+                            if (idxr != index) {
+                                idxr = index;
+                                xr = null;
+                            }
+                            if (xr == null) {
+                                xr = new XRelationship();
+                                xdb.addRelationship(xr);
+                            }
+                            xr.addKtv(ktv);
+                            break;
+                        case QUERY:
+                            if (idxq != index) {
+                                idxq = index;
+                                xq = null;
+                            }
+                            if (xq == null) {
+                                xq = new XQuery();
+                                xdb.addQuery(xq);
+                            }
+                            xq.addKtv(ktv);
+                            break;
+                        case TABLE:
+                            if (idxt != index) {
+                                idxt = index;
+                                idxti = -1;
+                                idxtc = -1;
+                                xt = null;
                             }
-                            xt.addIndex(xti);
-                        }
-                        xti.addKtv(ktv);
-                    } else if (ktv.isTableColumnProp()) {
-                        int secondIndex = ktv.getSecondIndex();
-                        if (idxtc != secondIndex) {
-                            idxtc = secondIndex;
-                            xtc = null;
-                        }
-                        if (xtc == null) {
-                            xtc = new XColumn();
                             if (xt == null) {
-                                throw new IOException("Bad format: Columns without Table metadata");
+                                xt = new XTable();
+                                xdb.addTable(xt);
+                            }
+                            xt.addKtv(ktv);
+                            break;
+                        case TABLE_INDEX:
+                            if (idxti != prefix.getSecondIndex()) {
+                                idxti = prefix.getSecondIndex();
+                                xti = null;
+                            }
+                            if (xti == null) {
+                                xti = new XIndex();
+                                if (xt == null) {
+                                    throw new IOException("Bad format: Index without Table metadata");
+                                }
+                                xt.addIndex(xti);
+                            }
+                            xti.addKtv(ktv);
+                            break;
+                        case TABLE_COLUMN:
+                            if (idxtc != prefix.getSecondIndex()) {
+                                idxtc = prefix.getSecondIndex();
+                                xtc = null;
+                            }
+                            if (xtc == null) {
+                                xtc = new XColumn();
+                                if (xt == null) {
+                                    throw new IOException("Bad format: Columns without Table metadata");
+                                }
+                                xt.addColumn(xtc);
                             }
-                            xt.addColumn(xtc);
-                        }
-                        xtc.addKtv(ktv);
+                            xtc.addKtv(ktv);
+                            break;
+                        default: // extraction metadata
+                            break;
                     }
                 }
                 recordCount++;
@@ -0,0 +1,191 @@
+package nl.knaw.dans.repo.axxess.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A read-only {@link FileChannel} that serves reads from memory-mapped regions of a file, instead of issuing a
+ * system call for every read. The file is mapped when the channel is created; the underlying file handle is
+ * closed right away. Mapped regions are released when the channel is garbage collected, since Jackcess does
+ * not close channels it did not open itself.
+ * <p>
+ * Positional reads may be issued concurrently.
+ */
+class MappedFileChannel extends FileChannel {
+
+    private static final long REGION_SIZE = 1L << 30;
+
+    private final long regionSize;
+    private final long size;
+    private MappedByteBuffer[] regions;
+    private long position;
+
+    MappedFileChannel(File file) throws IOException {
+        this(file, REGION_SIZE);
+    }
+
+    MappedFileChannel(File file, long regionSize) throws IOException {
+        this.regionSize = regionSize;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            size = channel.size();
+            regions = new MappedByteBuffer[(int) ((size + regionSize - 1) / regionSize)];
+            for (int i = 0; i < regions.length; i++) {
+                long offset = i * regionSize;
+                regions[i] = channel.map(MapMode.READ_ONLY, offset, Math.min(regionSize, size - offset));
+            }
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int count = read(dst, position);
+        if (count > 0) {
+            position += count;
+        }
+        return count;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int count = read(dsts[i]);
+            if (count < 0) {
+                return total == 0 ? -1 : total;
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        MappedByteBuffer[] mapped = getRegions();
+        if (position >= size) {
+            return -1;
+        }
+        int total = 0;
+        while (dst.hasRemaining() && position < size) {
+            int index = (int) (position / regionSize);
+            int offset = (int) (position - index * regionSize);
+            ByteBuffer region = mapped[index].duplicate();
+            int length = Math.min(dst.remaining(), region.capacity() - offset);
+            region.limit(offset + length).position(offset);
+            dst.put(region);
+            total += length;
+            position += length;
+        }
+        return total;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        getRegions();
+        return position;
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+        getRegions();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        getRegions();
+        return size;
+    }
+
+    @Override
+    public FileChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        getRegions();
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, 64 * 1024));
+        long total = 0;
+        while (total < count) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), count - total));
+            int read = read(buffer, position + total);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) {
+        throw new UnsupportedOperationException("Cannot map a mapped channel");
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("Cannot lock a mapped channel");
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("Cannot lock a mapped channel");
+    }
+
+    @Override
+    protected void implCloseChannel() {
+        Arrays.fill(regions, null);
+        regions = null;
+    }
+
+    private MappedByteBuffer[] getRegions() throws ClosedChannelException {
+        MappedByteBuffer[] mapped = regions;
+        if (mapped == null) {
+            throw new ClosedChannelException();
+        }
+        return mapped;
+    }
+}
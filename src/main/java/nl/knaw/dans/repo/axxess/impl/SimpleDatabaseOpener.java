@@ -0,0 +1,70 @@
+package nl.knaw.dans.repo.axxess.impl;
+
+import com.healthmarketscience.jackcess.CryptCodecProvider;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.util.MemFileChannel;
+import com.healthmarketscience.jackcess.util.ReadOnlyFileChannel;
+import nl.knaw.dans.repo.axxess.acc2csv.DatabaseOpener;
+
+import java.io.File;
+import java.io.IOException;
+
+public class SimpleDatabaseOpener implements DatabaseOpener {
+
+    private boolean memoryMapped;
+    private long inMemoryLimit;
+
+    /**
+     * Open read-only databases through a memory-mapped channel. Page reads are then served from mapped
+     * memory instead of from positional reads on the file. Databases that are not opened read-only are
+     * always opened on a normal file channel.
+     * Default <code>false</code>.
+     *
+     * @param memoryMapped <code>true</code> if read-only databases should be memory-mapped
+     * @return this for chaining method calls
+     */
+    public SimpleDatabaseOpener setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+        return this;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Read read-only databases of up to <code>inMemoryLimit</code> bytes into memory in one sequential read, and
+     * serve all page reads from memory. Larger databases are opened on a (memory-mapped) file channel. Every
+     * handle opened keeps its own copy of the database in memory.
+     * Default <code>0</code>, databases are never read into memory.
+     *
+     * @param inMemoryLimit maximum size in bytes of a database read into memory, 0 to never read into memory
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>inMemoryLimit</code> is negative
+     */
+    public SimpleDatabaseOpener withInMemoryLimit(long inMemoryLimit) {
+        if (inMemoryLimit < 0) {
+            throw new IllegalArgumentException("In-memory limit cannot be negative: " + inMemoryLimit);
+        }
+        this.inMemoryLimit = inMemoryLimit;
+        return this;
+    }
+
+    public long getInMemoryLimit() {
+        return inMemoryLimit;
+    }
+
+    @Override
+    public Database open(File file, boolean readOnly) throws IOException {
+        DatabaseBuilder builder = new DatabaseBuilder(file)
+          .setReadOnly(readOnly)
+          .setCodecProvider(new CryptCodecProvider());
+        if (readOnly && inMemoryLimit > 0 && file.length() <= inMemoryLimit) {
+            builder.setChannel(new ReadOnlyFileChannel(MemFileChannel.newChannel(file, "r")));
+        } else if (readOnly && memoryMapped) {
+            builder.setChannel(new MappedFileChannel(file));
+        }
+        return builder.open();
+    }
+}
@@ -49,6 +49,16 @@ public class SimpleFilenameComposer implements FilenameComposer {
         return getTableDataFilename(table.getDatabase().getFile(), table.getName());
     }
 
+    public String getTableDataPartFilename(File dbFile, String tableName, int partNumber) {
+        String basename = cleanDatabaseName(dbFile);
+        return String.format("%s.%s.part-%04d.csv", basename, cleanTableName(tableName), partNumber);
+    }
+
+    @Override
+    public String getTableDataPartFilename(Table table, int partNumber) {
+        return getTableDataPartFilename(table.getDatabase().getFile(), table.getName(), partNumber);
+    }
+
     public String getArchiveFilename(File dbFile) {
         String basename = cleanDatabaseName(dbFile);
         return String.format("%s.csv.zip", basename);
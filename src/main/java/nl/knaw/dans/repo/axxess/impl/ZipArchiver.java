@@ -1,5 +1,6 @@
 package nl.knaw.dans.repo.axxess.impl;
 
+import nl.knaw.dans.repo.axxess.acc2csv.ArchiveWriter;
 import nl.knaw.dans.repo.axxess.acc2csv.Archiver;
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
@@ -11,6 +12,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
@@ -20,19 +25,53 @@ public class ZipArchiver implements Archiver {
 
     public static final String EXTENSION = ".zip";
     private static final int BUFFER = 2048;
+    private static final int CHANNEL_BUFFER = 64 * 1024;
 
     private static Logger LOG = LoggerFactory.getLogger(ZipArchiver.class);
 
     private CRC32 crc32;
+    private int compressionThreads = 1;
 
     public ZipArchiver() {
         crc32 = new CRC32();
     }
 
+    /**
+     * Compress archived files on <code>compressionThreads</code> threads. Files are cut into blocks that are
+     * deflated concurrently, blocks of several files at once, and are then assembled into an ordinary zip file.
+     * Only has effect if archives are compressed.
+     * Default <code>1</code>, i.e. files are compressed one after the other on the calling thread.
+     *
+     * @param compressionThreads number of compression threads, at least 1
+     * @return this for chaining method calls
+     * @throws IllegalArgumentException if <code>compressionThreads</code> is less than 1
+     */
+    public ZipArchiver withCompressionThreads(int compressionThreads) {
+        if (compressionThreads < 1) {
+            throw new IllegalArgumentException("Number of compression threads should be at least 1, not "
+              + compressionThreads);
+        }
+        this.compressionThreads = compressionThreads;
+        return this;
+    }
+
+    /**
+     * Get the number of threads used for compression.
+     *
+     * @return number of compression threads
+     * @see #withCompressionThreads(int)
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
     @Override
     public File archive(List<File> files, boolean compress, File target) throws IOException {
         String zipFilename = FilenameUtils.removeExtension(target.getAbsolutePath()) + EXTENSION;
         LOG.info("Zipping to {}", zipFilename);
+        if (compress && compressionThreads > 1) {
+            return archiveInParallel(files, new File(zipFilename));
+        }
         ZipOutputStream out = null;
         try {
             FileOutputStream dest = new FileOutputStream(zipFilename);
@@ -73,6 +112,31 @@ public class ZipArchiver implements Archiver {
         return new File(zipFilename);
     }
 
+    @Override
+    public ArchiveWriter openArchive(boolean compress, File target) throws IOException {
+        String zipFilename = FilenameUtils.removeExtension(target.getAbsolutePath()) + EXTENSION;
+        LOG.info("Streaming to {}", zipFilename);
+        return new ZipChannelWriter(new File(zipFilename), compress, compressionThreads);
+    }
+
+    private File archiveInParallel(List<File> files, File zipFile) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CHANNEL_BUFFER);
+        try (ZipChannelWriter writer = new ZipChannelWriter(zipFile, true, compressionThreads)) {
+            for (File file : files) {
+                WritableByteChannel entry = writer.newEntry(file.getName());
+                try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    while (in.read(buffer) != -1) {
+                        buffer.flip();
+                        entry.write(buffer);
+                        buffer.clear();
+                    }
+                }
+                entry.close();
+            }
+        }
+        return zipFile;
+    }
+
     private long computeCRC32(File file) throws IOException {
         crc32.reset();
         BufferedInputStream origin = null;
@@ -0,0 +1,531 @@
+package nl.knaw.dans.repo.axxess.impl;
+
+import nl.knaw.dans.repo.axxess.acc2csv.ArchiveWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a zip file entry by entry on a {@link FileChannel}. Sizes and CRC of an entry are not known in
+ * advance; they are computed while the entry is written and patched into its local header afterwards.
+ * Entries therefore need no data descriptor, and STORED entries can also be read with
+ * {@link java.util.zip.ZipInputStream}. Entries and archives beyond 4GB or 65535 entries get zip64 records.
+ * <p>
+ * With more than one compression thread, deflated entries are cut into blocks that are compressed
+ * concurrently, each block primed with the last 32K of the block before it and closed with a sync flush, so
+ * that the blocks together form one ordinary deflate stream. Headers and compressed blocks are written in
+ * their original order as they become available, which keeps blocks of several entries in flight at once.
+ */
+class ZipChannelWriter implements ArchiveWriter {
+
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int END_SIG = 0x06054b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOC_SIG = 0x07064b50;
+
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final short ZIP64_EXTRA_ID = 0x0001;
+    // room in the local header for a zip64 extra field, kept as padding if the entry turns out small
+    private static final short PADDING_EXTRA_ID = (short) 0xD935;
+    private static final int LOC_EXTRA_SIZE = 20;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final ThreadLocal<Deflater> BLOCK_DEFLATERS =
+      ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    private final File file;
+    private final FileChannel channel;
+    private final boolean compress;
+    private final int dosTime;
+    private final List<Entry> entries = new ArrayList<>();
+    private ByteBuffer header = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    // blocks are only used for parallel compression
+    private final ExecutorService deflaters;
+    private final int maxPendingBlocks;
+    private final Deque<Future<Block>> pendingBlocks = new ArrayDeque<>();
+
+    private WritableByteChannel current;
+    private boolean closed;
+
+    ZipChannelWriter(File file, boolean compress) throws IOException {
+        this(file, compress, 1);
+    }
+
+    ZipChannelWriter(File file, boolean compress, int compressionThreads) throws IOException {
+        this.file = file;
+        this.compress = compress;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.WRITE);
+        dosTime = dosTime(LocalDateTime.now());
+        if (compress && compressionThreads > 1) {
+            deflaters = Executors.newFixedThreadPool(compressionThreads);
+            maxPendingBlocks = compressionThreads * 4;
+        } else {
+            deflaters = null;
+            maxPendingBlocks = 0;
+        }
+    }
+
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public WritableByteChannel newEntry(String name) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (current != null) {
+            current.close();
+        }
+        Entry entry = new Entry(name);
+        entries.add(entry);
+        clearHeader(LOC_HEADER_SIZE + entry.name.length + LOC_EXTRA_SIZE);
+        header.putInt(LOC_SIG)
+              .putShort((short) VERSION)
+              .putShort((short) FLAG_UTF8)
+              .putShort((short) entry.method)
+              .putInt(dosTime)
+              .putInt(0) // crc, patched when the entry ends
+              .putInt(0) // compressed size
+              .putInt(0) // size
+              .putShort((short) entry.name.length)
+              .putShort((short) LOC_EXTRA_SIZE)
+              .put(entry.name)
+              .putShort(PADDING_EXTRA_ID)
+              .putShort((short) (LOC_EXTRA_SIZE - 4))
+              .putLong(0)
+              .putLong(0);
+        if (deflaters == null) {
+            entry.offset = channel.position();
+            writeHeader();
+            current = new EntryChannel(entry);
+        } else {
+            header.flip();
+            byte[] bytes = Arrays.copyOf(header.array(), header.limit());
+            addBlock(CompletableFuture.completedFuture(new Block(entry, Block.HEADER, bytes, bytes.length)));
+            current = new BlockEntryChannel(entry);
+        }
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (current != null) {
+                current.close();
+            }
+            while (!pendingBlocks.isEmpty()) {
+                writeBlock(pendingBlocks.poll());
+            }
+            writeCentralDirectory();
+        } finally {
+            closed = true;
+            if (deflaters != null) {
+                deflaters.shutdownNow();
+            }
+            channel.close();
+        }
+    }
+
+    private void endEntry(Entry entry) throws IOException {
+        ByteBuffer patch = ByteBuffer.allocate(LOC_EXTRA_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        boolean zip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+        patch.putInt((int) entry.crc)
+             .putInt((int) (zip64 ? ZIP64_MAGIC : entry.compressedSize))
+             .putInt((int) (zip64 ? ZIP64_MAGIC : entry.size));
+        patch.flip();
+        writeAt(patch, entry.offset + 14);
+        if (zip64) {
+            patch.clear();
+            patch.putShort((short) VERSION_ZIP64);
+            patch.flip();
+            writeAt(patch, entry.offset + 4);
+            patch.clear();
+            patch.putShort(ZIP64_EXTRA_ID)
+                 .putShort((short) 16)
+                 .putLong(entry.size)
+                 .putLong(entry.compressedSize);
+            patch.flip();
+            writeAt(patch, entry.offset + LOC_HEADER_SIZE + entry.name.length);
+        }
+    }
+
+    private void addBlock(Future<Block> block) throws IOException {
+        pendingBlocks.add(block);
+        while (pendingBlocks.size() > maxPendingBlocks) {
+            writeBlock(pendingBlocks.poll());
+        }
+    }
+
+    private void writeBlock(Future<Block> future) throws IOException {
+        Block block;
+        try {
+            block = future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Exception while compressing " + file.getName(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing " + file.getName(), e);
+        }
+        if (block.kind == Block.HEADER) {
+            block.entry.offset = channel.position();
+        } else {
+            block.entry.compressedSize += block.length;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(block.data, 0, block.length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (block.kind == Block.LAST) {
+            endEntry(block.entry);
+        }
+    }
+
+    private static Block deflateBlock(Entry entry, byte[] input, int length, byte[] previous, int previousLength,
+                                      boolean last) {
+        Deflater deflater = BLOCK_DEFLATERS.get();
+        deflater.reset();
+        if (previous != null) {
+            int dictionaryLength = Math.min(previousLength, DICTIONARY_SIZE);
+            deflater.setDictionary(previous, previousLength - dictionaryLength, dictionaryLength);
+        }
+        deflater.setInput(input, 0, length);
+        if (last) {
+            deflater.finish();
+        }
+        byte[] output = new byte[length + (length >> 3) + 64];
+        int outputLength = 0;
+        while (true) {
+            if (outputLength == output.length) {
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+            outputLength += deflater.deflate(output, outputLength, output.length - outputLength,
+              last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+            // a sync flush is complete when it leaves room in the output buffer
+            if (last ? deflater.finished() : outputLength < output.length) {
+                break;
+            }
+        }
+        return new Block(entry, last ? Block.LAST : Block.DATA, output, outputLength);
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long cenOffset = channel.position();
+        for (Entry entry : entries) {
+            boolean sizeZip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+            boolean offsetZip64 = entry.offset >= ZIP64_MAGIC;
+            int extraSize = (sizeZip64 ? 16 : 0) + (offsetZip64 ? 8 : 0);
+            int version = extraSize > 0 ? VERSION_ZIP64 : VERSION;
+            clearHeader(46 + entry.name.length + 28);
+            header.putInt(CEN_SIG)
+                  .putShort((short) version) // made by
+                  .putShort((short) version) // needed to extract
+                  .putShort((short) FLAG_UTF8)
+                  .putShort((short) entry.method)
+                  .putInt(dosTime)
+                  .putInt((int) entry.crc)
+                  .putInt((int) (sizeZip64 ? ZIP64_MAGIC : entry.compressedSize))
+                  .putInt((int) (sizeZip64 ? ZIP64_MAGIC : entry.size))
+                  .putShort((short) entry.name.length)
+                  .putShort((short) (extraSize > 0 ? extraSize + 4 : 0))
+                  .putShort((short) 0) // comment length
+                  .putShort((short) 0) // disk number
+                  .putShort((short) 0) // internal attributes
+                  .putInt(0) // external attributes
+                  .putInt((int) (offsetZip64 ? ZIP64_MAGIC : entry.offset))
+                  .put(entry.name);
+            if (extraSize > 0) {
+                header.putShort(ZIP64_EXTRA_ID).putShort((short) extraSize);
+                if (sizeZip64) {
+                    header.putLong(entry.size).putLong(entry.compressedSize);
+                }
+                if (offsetZip64) {
+                    header.putLong(entry.offset);
+                }
+            }
+            writeHeader();
+        }
+        long cenSize = channel.position() - cenOffset;
+        boolean zip64 = entries.size() >= ZIP64_MAGIC_COUNT || cenOffset >= ZIP64_MAGIC || cenSize >= ZIP64_MAGIC;
+        if (zip64) {
+            long zip64EndOffset = channel.position();
+            header.clear();
+            header.putInt(ZIP64_END_SIG)
+                  .putLong(44) // size of the remainder of this record
+                  .putShort((short) VERSION_ZIP64)
+                  .putShort((short) VERSION_ZIP64)
+                  .putInt(0) // this disk
+                  .putInt(0) // disk of central directory
+                  .putLong(entries.size())
+                  .putLong(entries.size())
+                  .putLong(cenSize)
+                  .putLong(cenOffset)
+                  .putInt(ZIP64_LOC_SIG)
+                  .putInt(0) // disk of zip64 end record
+                  .putLong(zip64EndOffset)
+                  .putInt(1); // number of disks
+            writeHeader();
+        }
+        int count = zip64 ? ZIP64_MAGIC_COUNT : entries.size();
+        header.clear();
+        header.putInt(END_SIG)
+              .putShort((short) 0)
+              .putShort((short) 0)
+              .putShort((short) count)
+              .putShort((short) count)
+              .putInt((int) (zip64 ? ZIP64_MAGIC : cenSize))
+              .putInt((int) (zip64 ? ZIP64_MAGIC : cenOffset))
+              .putShort((short) 0); // comment length
+        writeHeader();
+    }
+
+    private void clearHeader(int size) {
+        if (header.capacity() < size) {
+            header = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        header.clear();
+    }
+
+    private void writeHeader() throws IOException {
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    private void writeAt(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static int dosTime(LocalDateTime time) {
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+          | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    private class Entry {
+
+        private final byte[] name;
+        private final int method;
+        private long offset;
+        private long crc;
+        private long size;
+        private long compressedSize;
+
+        private Entry(String name) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            method = compress ? METHOD_DEFLATED : METHOD_STORED;
+        }
+    }
+
+    private class EntryChannel implements WritableByteChannel {
+
+        private final Entry entry;
+        private final CRC32 crc32 = new CRC32();
+        private final Deflater deflater;
+        private final byte[] input;
+        private final byte[] output;
+        private boolean open = true;
+
+        private EntryChannel(Entry entry) {
+            this.entry = entry;
+            if (compress) {
+                deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                input = new byte[BUFFER_SIZE];
+                output = new byte[BUFFER_SIZE];
+            } else {
+                deflater = null;
+                input = null;
+                output = null;
+            }
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            int count = src.remaining();
+            entry.size += count;
+            if (deflater == null) {
+                ByteBuffer crcView = src.duplicate();
+                crc32.update(crcView);
+                while (src.hasRemaining()) {
+                    entry.compressedSize += channel.write(src);
+                }
+                return count;
+            }
+            while (src.hasRemaining()) {
+                int length = Math.min(src.remaining(), input.length);
+                src.get(input, 0, length);
+                crc32.update(input, 0, length);
+                deflater.setInput(input, 0, length);
+                while (!deflater.needsInput()) {
+                    deflate();
+                }
+            }
+            return count;
+        }
+
+        private void deflate() throws IOException {
+            int length = deflater.deflate(output, 0, output.length);
+            if (length > 0) {
+                ByteBuffer buffer = ByteBuffer.wrap(output, 0, length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                entry.compressedSize += length;
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!open) {
+                return;
+            }
+            open = false;
+            if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate();
+                }
+                deflater.end();
+            }
+            entry.crc = crc32.getValue();
+            endEntry(entry);
+            current = null;
+        }
+    }
+
+    private static class Block {
+
+        private static final int HEADER = 0;
+        private static final int DATA = 1;
+        private static final int LAST = 2;
+
+        private final Entry entry;
+        private final int kind;
+        private final byte[] data;
+        private final int length;
+
+        private Block(Entry entry, int kind, byte[] data, int length) {
+            this.entry = entry;
+            this.kind = kind;
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Cuts a deflated entry into blocks that are compressed on the pool of deflaters. The CRC is computed
+     * on the writing thread.
+     */
+    private class BlockEntryChannel implements WritableByteChannel {
+
+        private final Entry entry;
+        private final CRC32 crc32 = new CRC32();
+        private byte[] input = new byte[BLOCK_SIZE];
+        private int length;
+        private byte[] previous;
+        private int previousLength;
+        private boolean open = true;
+
+        private BlockEntryChannel(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            int count = src.remaining();
+            entry.size += count;
+            crc32.update(src.duplicate());
+            while (src.hasRemaining()) {
+                int chunk = Math.min(src.remaining(), input.length - length);
+                src.get(input, length, chunk);
+                length += chunk;
+                if (length == input.length) {
+                    submit(false);
+                }
+            }
+            return count;
+        }
+
+        private void submit(boolean last) throws IOException {
+            byte[] blockInput = input;
+            int blockLength = length;
+            byte[] dictionary = previous;
+            int dictionaryLength = previousLength;
+            addBlock(deflaters.submit(
+              () -> deflateBlock(entry, blockInput, blockLength, dictionary, dictionaryLength, last)));
+            previous = blockInput;
+            previousLength = blockLength;
+            input = last ? null : new byte[BLOCK_SIZE];
+            length = 0;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!open) {
+                return;
+            }
+            open = false;
+            entry.crc = crc32.getValue();
+            submit(true);
+            current = null;
+        }
+    }
+}
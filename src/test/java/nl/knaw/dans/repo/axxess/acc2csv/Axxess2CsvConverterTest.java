@@ -0,0 +1,412 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import com.healthmarketscience.jackcess.DataType;
+import nl.knaw.dans.repo.axxess.core.Converter;
+import nl.knaw.dans.repo.axxess.core.DefaultCodex;
+import nl.knaw.dans.repo.axxess.impl.SimpleFilenameComposer;
+import nl.knaw.dans.repo.axxess.impl.ZipArchiver;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Axxess2CsvConverterTest {
+
+    private static final File SOURCE_DIR = new File("target/test-parallel/source");
+    private static final File TARGET_DIR = new File("target/test-parallel");
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        FileUtils.deleteDirectory(TARGET_DIR);
+        File database = new File("src/test/resources/integration/types/db/all_datatypes.mdb");
+        for (int i = 0; i < 4; i++) {
+            FileUtils.copyFile(database, new File(SOURCE_DIR, "db" + i + ".mdb"));
+        }
+    }
+
+    @AfterAll
+    static void afterAll() throws Exception {
+        FileUtils.deleteDirectory(TARGET_DIR);
+    }
+
+    @Test
+    void parallelConversionEqualsSequentialConversion() throws Exception {
+        Axxess2CsvConverter sequential = new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "sequential"))
+          .setIncludeManifest(true);
+        Axxess2CsvConverter parallel = new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "parallel"))
+          .setIncludeManifest(true)
+          .withParallelism(3);
+        assertSameResults(SOURCE_DIR, sequential, parallel);
+
+        assertEquals(4, parallel.getDatabaseCount());
+        assertEquals(0, parallel.getErrorCount());
+        assertEquals(sequential.getWarningCount(), parallel.getWarningCount());
+    }
+
+    @Test
+    void parallelConversionCopiesCodexSubclass() throws Exception {
+        List<File> files = new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "subclass"))
+          .withCodex(new UpperCaseCodex())
+          .setExtractMetadata(false)
+          .withParallelism(2)
+          .withTableParallelism(2)
+          .withEncoderThreads(2)
+          .convert(SOURCE_DIR);
+
+        for (File file : files) {
+            if (file.getName().endsWith(".TableDataTypes.csv")) {
+                String data = FileUtils.readFileToString(file, "UTF-8");
+                assertTrue(data.contains("ANOTHER") && !data.contains("another"));
+            }
+        }
+        assertNull(new DefaultCodex(null) {}.copy());
+    }
+
+    @Test
+    void codexThatCannotBeCopiedIsUsedOnOneThread() throws Exception {
+        assertSameResults(SOURCE_DIR,
+          new Axxess2CsvConverter()
+            .withTargetDirectory(new File(TARGET_DIR, "uncopied-sequential"))
+            .setExtractMetadata(false),
+          new Axxess2CsvConverter()
+            .withTargetDirectory(new File(TARGET_DIR, "uncopied-parallel"))
+            .withCodex(new DefaultCodex(null) {})
+            .setExtractMetadata(false)
+            .withParallelism(2)
+            .withTableParallelism(2)
+            .withEncoderThreads(2)
+            .withScanPartitions(2));
+    }
+
+    @Test
+    void parallelTableExtractionEqualsSequentialExtraction() throws Exception {
+        assertSameResults(new File(SOURCE_DIR, "db0.mdb"),
+          new Axxess2CsvConverter()
+            .withTargetDirectory(new File(TARGET_DIR, "tables-sequential"))
+            .setExtractMetadata(false),
+          new Axxess2CsvConverter()
+            .withTargetDirectory(new File(TARGET_DIR, "tables-parallel"))
+            .setExtractMetadata(false)
+            .withTableParallelism(2));
+    }
+
+    @Test
+    void pipelinedExtractionEqualsSequentialExtraction() throws Exception {
+        assertSameResults(new File(SOURCE_DIR, "db1.mdb"),
+          new Axxess2CsvConverter()
+            .withTargetDirectory(new File(TARGET_DIR, "pipeline-sequential"))
+            .setExtractMetadata(false),
+          new Axxess2CsvConverter()
+            .withTargetDirectory(new File(TARGET_DIR, "pipeline-pipelined"))
+            .setExtractMetadata(false)
+            .withEncoderThreads(2));
+    }
+
+    @Test
+    void inMemoryExtractionEqualsFileExtraction() throws Exception {
+        File database = new File(SOURCE_DIR, "db2.mdb");
+        assertSameResults(database,
+          new Axxess2CsvConverter()
+            .withTargetDirectory(new File(TARGET_DIR, "memory-file")),
+          new Axxess2CsvConverter()
+            .withTargetDirectory(new File(TARGET_DIR, "memory-memory"))
+            .withInMemoryLimit(database.length()));
+    }
+
+    @Test
+    void keyRangeExtractionEqualsKeyOrderedExtraction() throws Exception {
+        List<File> rangedFiles = assertSameResults(new File(SOURCE_DIR, "db0.mdb"),
+          new Axxess2CsvConverter()
+            .withTargetDirectory(new File(TARGET_DIR, "ranges-ordered"))
+            .setExtractMetadata(false)
+            .withScanPartitions(1),
+          new Axxess2CsvConverter()
+            .withTargetDirectory(new File(TARGET_DIR, "ranges-ranged"))
+            .setExtractMetadata(false)
+            .withScanPartitions(2));
+        // the ranges of TableDataTypes are joined, without leftover range files
+        File tableFile = new File(rangedFiles.get(0).getParentFile(), "db0.mdb.TableDataTypes.csv");
+        List<String> lines = FileUtils.readLines(tableFile, "UTF-8");
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(1).startsWith("1,") && lines.get(2).startsWith("2,"));
+        assertEquals(rangedFiles.size(), rangedFiles.get(0).getParentFile().list().length);
+    }
+
+    @Test
+    void partFilesHoldTableData() throws Exception {
+        File database = new File(SOURCE_DIR, "db3.mdb");
+        List<File> tableFiles = new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "parts-whole"))
+          .setExtractMetadata(false)
+          .convert(database);
+        Axxess2CsvConverter converter = new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "parts-parts"))
+          .setIncludeManifest(true)
+          .withMaxRowsPerPart(2);
+        List<File> partFiles = converter.convert(database);
+
+        String manifest = FileUtils.readFileToString(partFiles.get(partFiles.size() - 1), "UTF-8");
+        String metadata = FileUtils.readFileToString(partFiles.get(0), "UTF-8");
+        for (File tableFile : tableFiles) {
+            List<String> lines = FileUtils.readLines(tableFile, "UTF-8");
+            List<String> joined = new ArrayList<>();
+            for (File partFile : partFiles) {
+                if (partFile.getName().startsWith(tableFile.getName().replace(".csv", ".part-"))) {
+                    List<String> partLines = FileUtils.readLines(partFile, "UTF-8");
+                    assertEquals(lines.get(0), partLines.get(0));
+                    assertTrue(partLines.size() <= 3);
+                    joined.addAll(joined.isEmpty() ? partLines : partLines.subList(1, partLines.size()));
+                    assertTrue(manifest.contains(partFile.getName()));
+                    assertTrue(metadata.contains(partFile.getName()));
+                }
+            }
+            assertEquals(lines, joined);
+        }
+    }
+
+    @Test
+    void resumedConversionSkipsConvertedDatabases() throws Exception {
+        Axxess2CsvConverter first = new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "resume"))
+          .setResumeConversion(true);
+        List<File> firstFiles = first.convert(SOURCE_DIR);
+
+        Axxess2CsvConverter second = new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "resume"))
+          .setResumeConversion(true);
+        List<File> secondFiles = second.convert(SOURCE_DIR);
+
+        assertEquals(4, first.getDatabaseCount());
+        assertEquals(0, second.getDatabaseCount());
+        assertEquals(0, second.getErrorCount());
+        assertEquals(firstFiles, secondFiles);
+
+        // other codex settings
+        Axxess2CsvConverter third = new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "resume"))
+          .withCodex(new DefaultCodex(null).withBooleanStrings("Yes", "No"))
+          .setResumeConversion(true);
+        third.convert(SOURCE_DIR);
+        assertEquals(4, third.getDatabaseCount());
+    }
+
+    @Test
+    void partialStreamedArchiveIsRecordedInLedger() throws Exception {
+        File targetDir = new File(TARGET_DIR, "resume-stream");
+        File database = new File(SOURCE_DIR, "db2.mdb");
+        File[] archive = new File[1];
+        // the archive breaks after its first entry
+        Archiver archiver = new Archiver() {
+            @Override
+            public File archive(List<File> files, boolean compress, File target) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public ArchiveWriter openArchive(boolean compress, File target) throws IOException {
+                ArchiveWriter writer = new ZipArchiver().openArchive(compress, target);
+                archive[0] = writer.getFile();
+                return new ArchiveWriter() {
+                    private int entryCount;
+
+                    @Override
+                    public WritableByteChannel newEntry(String name) throws IOException {
+                        if (entryCount++ > 0) {
+                            throw new IOException("Disk full");
+                        }
+                        return writer.newEntry(name);
+                    }
+
+                    @Override
+                    public File getFile() {
+                        return writer.getFile();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        writer.close();
+                    }
+                };
+            }
+        };
+        Axxess2CsvConverter converter = new Axxess2CsvConverter()
+          .withTargetDirectory(targetDir)
+          .withArchiver(archiver)
+          .setArchiveResults(true)
+          .setStreamArchive(true)
+          .setResumeConversion(true);
+        assertTrue(converter.convert(database).isEmpty());
+        assertEquals(1, converter.getErrorCount());
+        assertTrue(archive[0].exists());
+
+        try (ConversionLedger ledger = new ConversionLedger(targetDir, new SimpleFilenameComposer())) {
+            assertNull(ledger.getCompletedResults(database, "settings"));
+            ledger.start(database, "settings");
+        }
+        assertFalse(archive[0].exists());
+    }
+
+    @Test
+    void manifestHoldsDigestsOfResultFiles() throws Exception {
+        File database = new File(SOURCE_DIR, "db1.mdb");
+        // metadata is written after the parts of the tables
+        assertManifestDigests(new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "manifest-parts"))
+          .setIncludeManifest(true)
+          .withMaxRowsPerPart(1)
+          .convert(database));
+        // the key ranges of tables are joined
+        assertManifestDigests(new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "manifest-ranges"))
+          .setIncludeManifest(true)
+          .withScanPartitions(2)
+          .convert(database));
+        // the extraction of a table resumes at its checkpoint
+        Axxess2CsvConverter interrupted = new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "manifest-resumed"))
+          .withCodex(new FailingCodex("another"))
+          .setIncludeManifest(true)
+          .setResumeConversion(true)
+          .withCheckpointInterval(1);
+        assertTrue(interrupted.convert(database).isEmpty());
+        assertEquals(1, interrupted.getErrorCount());
+        File tableFile = new File(TARGET_DIR, "manifest-resumed/db1_mdb/db1.mdb.TableDataTypes.csv");
+        assertTrue(TableCheckpoint.fileFor(tableFile).exists());
+        assertManifestDigests(new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "manifest-resumed"))
+          .setIncludeManifest(true)
+          .setResumeConversion(true)
+          .withCheckpointInterval(1)
+          .convert(database));
+        assertFalse(TableCheckpoint.fileFor(tableFile).exists());
+    }
+
+    @Test
+    void resumedConversionKeepsSidecarFiles() throws Exception {
+        File database = new File(SOURCE_DIR, "db3.mdb");
+        File targetDirectory = new File(TARGET_DIR, "sidecars-resumed");
+        // the picture of the first row is written to a sidecar file before the second row fails
+        Axxess2CsvConverter interrupted = new Axxess2CsvConverter()
+          .withTargetDirectory(targetDirectory)
+          .withCodex(new FailingCodex("another"))
+          .setIncludeManifest(true)
+          .setResumeConversion(true)
+          .withCheckpointInterval(1)
+          .withSidecarThreshold(10000);
+        assertTrue(interrupted.convert(database).isEmpty());
+        File csvDirectory = new File(targetDirectory, "db3_mdb");
+        assertEquals(1, csvDirectory.list((dir, name) -> name.endsWith(".bin")).length);
+
+        Axxess2CsvConverter resumed = new Axxess2CsvConverter()
+          .withTargetDirectory(targetDirectory)
+          .setIncludeManifest(true)
+          .setResumeConversion(true)
+          .withCheckpointInterval(1)
+          .withSidecarThreshold(10000);
+        List<File> files = resumed.convert(database);
+        assertEquals(0, resumed.getErrorCount());
+        assertEquals(1, files.stream().filter(file -> file.getName().endsWith(".bin")).count());
+        assertManifestDigests(files);
+    }
+
+    @Test
+    void parallelismShouldBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new Axxess2CsvConverter().withParallelism(0));
+    }
+
+    @Test
+    void inMemoryLimitCannotBeNegative() {
+        assertThrows(IllegalArgumentException.class, () -> new Axxess2CsvConverter().withInMemoryLimit(-1));
+    }
+
+    // converts the source with both converters, and asserts that their result files are the same
+    private static List<File> assertSameResults(File source, Axxess2CsvConverter expected,
+                                                Axxess2CsvConverter actual) throws Exception {
+        List<File> expectedFiles = expected.convert(source);
+        List<File> actualFiles = actual.convert(source);
+        assertEquals(expectedFiles.size(), actualFiles.size());
+        for (int i = 0; i < expectedFiles.size(); i++) {
+            assertEquals(expectedFiles.get(i).getName(), actualFiles.get(i).getName());
+            assertEquals(contentOf(expectedFiles.get(i)), contentOf(actualFiles.get(i)));
+        }
+        return actualFiles;
+    }
+
+    // content of a result file, without the conversion date of metadata and without the digest of metadata
+    private static String contentOf(File file) throws Exception {
+        return FileUtils.readFileToString(file, "UTF-8")
+          .replaceFirst("\\[EM\\],Conversion date,TEXT,[^\r\n]*", "")
+          .replaceAll("(_metadata\\.csv) [0-9a-f]{40}", "$1");
+    }
+
+    // the manifest is the last result file, it lists the sha1 digests of all other result files
+    private static void assertManifestDigests(List<File> files) throws Exception {
+        File manifest = files.get(files.size() - 1);
+        assertEquals(Converter.MANIFEST_FILENAME, manifest.getName());
+        List<String> lines = FileUtils.readLines(manifest, "UTF-8");
+        assertEquals(files.size() - 1, lines.size());
+        for (String line : lines) {
+            int split = line.lastIndexOf(' ');
+            File file = new File(manifest.getParentFile(), line.substring(0, split));
+            assertEquals(DigestUtils.sha1Hex(FileUtils.readFileToByteArray(file)), line.substring(split + 1));
+        }
+    }
+
+    // fails on a text value, with the fingerprint of a DefaultCodex so that the conversion can be resumed
+    private static class FailingCodex extends DefaultCodex {
+
+        private final String failingValue;
+
+        private FailingCodex(String failingValue) {
+            super(null);
+            this.failingValue = failingValue;
+        }
+
+        @Override
+        public Object encode(DataType type, Object value) {
+            if (failingValue.equals(value)) {
+                throw new IllegalStateException("Interrupted");
+            }
+            return super.encode(type, value);
+        }
+
+        @Override
+        public String getFingerprint() {
+            return new DefaultCodex(null).getFingerprint();
+        }
+    }
+
+    private static class UpperCaseCodex extends DefaultCodex {
+
+        private UpperCaseCodex() {
+            super(null);
+        }
+
+        @Override
+        public Object encode(DataType type, Object value) {
+            Object encoded = super.encode(type, value);
+            return type == DataType.TEXT && encoded != null ? encoded.toString().toUpperCase() : encoded;
+        }
+
+        @Override
+        public UpperCaseCodex copy() {
+            return copyTo(new UpperCaseCodex());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import nl.knaw.dans.repo.axxess.impl.SimpleFilenameComposer;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversionLedgerTest {
+
+    private static final File TARGET_DIR = new File("target/test-ledger");
+
+    private File source;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        FileUtils.deleteDirectory(TARGET_DIR);
+        source = new File(TARGET_DIR, "source/db.mdb");
+        FileUtils.copyFile(new File("src/test/resources/integration/types/db/all_datatypes.mdb"), source);
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        FileUtils.deleteDirectory(TARGET_DIR);
+    }
+
+    @Test
+    void outputOfPartialConversionIsDeleted() throws Exception {
+        File output = new File(TARGET_DIR, "db.mdb.table.csv");
+        try (ConversionLedger ledger = new ConversionLedger(TARGET_DIR, new SimpleFilenameComposer())) {
+            ledger.start(source, "settings");
+            ledger.addOutput(source, output);
+            FileUtils.write(output, "half written", StandardCharsets.UTF_8);
+        }
+
+        try (ConversionLedger ledger = new ConversionLedger(TARGET_DIR, new SimpleFilenameComposer())) {
+            assertNull(ledger.getCompletedResults(source, "settings"));
+            ledger.start(source, "settings");
+            assertFalse(output.exists());
+        }
+    }
+
+    @Test
+    void touchedSourceIsConvertedAgain() throws Exception {
+        File result = new File(TARGET_DIR, "db.mdb.csv.zip");
+        try (ConversionLedger ledger = new ConversionLedger(TARGET_DIR, new SimpleFilenameComposer())) {
+            ledger.start(source, "settings");
+            FileUtils.write(result, "zip", StandardCharsets.UTF_8);
+            ledger.done(source, Collections.singletonList(result));
+        }
+
+        try (ConversionLedger ledger = new ConversionLedger(TARGET_DIR, new SimpleFilenameComposer())) {
+            assertEquals(Collections.singletonList(result.getAbsoluteFile()),
+              ledger.getCompletedResults(source, "settings"));
+        }
+
+        // same size, same content
+        assertTrue(source.setLastModified(source.lastModified() - 60000));
+        try (ConversionLedger ledger = new ConversionLedger(TARGET_DIR, new SimpleFilenameComposer())) {
+            assertNull(ledger.getCompletedResults(source, "settings"));
+            ledger.start(source, "settings");
+            assertFalse(result.exists());
+        }
+    }
+
+    @Test
+    void completedConversionSurvivesTornLine() throws Exception {
+        File result = new File(TARGET_DIR, "db.mdb.csv.zip");
+        try (ConversionLedger ledger = new ConversionLedger(TARGET_DIR, new SimpleFilenameComposer())) {
+            ledger.start(source, "settings");
+            FileUtils.write(result, "zip", StandardCharsets.UTF_8);
+            ledger.done(source, Collections.singletonList(result));
+        }
+        File ledgerFile = new File(TARGET_DIR, ConversionLedger.LEDGER_FILENAME);
+        FileUtils.write(ledgerFile, "START\t/other/db.mdb\t12", StandardCharsets.UTF_8, true);
+
+        try (ConversionLedger ledger = new ConversionLedger(TARGET_DIR, new SimpleFilenameComposer())) {
+            assertEquals(Collections.singletonList(result.getAbsoluteFile()),
+              ledger.getCompletedResults(source, "settings"));
+            assertNull(ledger.getCompletedResults(source, "other settings"));
+        }
+        // compacted without the torn line
+        assertTrue(FileUtils.readFileToString(ledgerFile, StandardCharsets.UTF_8).endsWith("\n"));
+    }
+}
@@ -2,15 +2,19 @@ package nl.knaw.dans.repo.axxess.acc2csv;
 
 import com.healthmarketscience.jackcess.Database;
 import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.Relationship;
 import nl.knaw.dans.repo.axxess.core.Axxess;
 import nl.knaw.dans.repo.axxess.core.DefaultCodex;
 import nl.knaw.dans.repo.axxess.core.KeyTypeValueMatrix;
 import nl.knaw.dans.repo.axxess.core.ObjectType;
+import org.apache.commons.csv.CSVFormat;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -63,4 +67,38 @@ class MetadataExtractorTest {
             assertTrue(t.getMessage().contains("java.lang.RuntimeException"));
         }
     }
+
+    @Test
+    void printMetadataEqualsPrintedMatrix() throws Exception {
+        File databaseFile = new File("src/test/resources/integration/types/db/all_datatypes.mdb");
+        try (Database database = DatabaseBuilder.open(databaseFile)) {
+            MetadataExtractor metadataExtractor = new MetadataExtractor();
+            StringBuilder printed = new StringBuilder();
+            metadataExtractor.printMetadata(database, printed);
+            StringBuilder expected = new StringBuilder();
+            metadataExtractor.getMetadata(database)
+                             .printVertical(expected, CSVFormat.DEFAULT.withHeader("Obj", "Key", "Type", "Value"));
+            // but for the conversion date
+            String conversionDate = "\\[EM\\],Conversion date,TEXT,[^\r\n]*";
+            assertEquals(expected.toString().replaceFirst(conversionDate, ""),
+              printed.toString().replaceFirst(conversionDate, ""));
+        }
+    }
+
+    @Test
+    void schemaIndexListsRelationshipsLikeJackcess() throws Exception {
+        File databaseFile = new File("src/test/resources/integration/types/db/all_datatypes.mdb");
+        try (Database database = DatabaseBuilder.open(databaseFile)) {
+            SchemaIndex schema = new SchemaIndex(database, new TableSelection());
+            for (String tableName : database.getTableNames()) {
+                assertEquals(relationshipNames(database.getRelationships(database.getTable(tableName))),
+                  relationshipNames(schema.getRelationships(database.getTable(tableName))));
+            }
+            assertEquals(relationshipNames(database.getRelationships()), relationshipNames(schema.getRelationships()));
+        }
+    }
+
+    private static List<String> relationshipNames(List<Relationship> relationships) {
+        return relationships.stream().map(Relationship::getName).collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,115 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.Table;
+import nl.knaw.dans.repo.axxess.core.DefaultCodex;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TableCheckpointTest {
+
+    private static final File DATABASE = new File("src/test/resources/integration/types/db/all_datatypes.mdb");
+    private static final File TARGET_DIR = new File("target/test-checkpoint");
+
+    @AfterAll
+    static void afterAll() throws Exception {
+        FileUtils.deleteDirectory(TARGET_DIR);
+    }
+
+    @Test
+    void interruptedExtractionResumesAtCheckpoint() throws Exception {
+        FileUtils.deleteDirectory(TARGET_DIR);
+        try (Database db = new DatabaseBuilder(DATABASE).setReadOnly(true).open()) {
+            Table table = db.getTable("TableDataTypes");
+            File reference = new TableDataExtractor()
+              .withTargetDirectory(new File(TARGET_DIR, "reference"))
+              .writeTableData(table);
+
+            // fails while encoding the second row, after the checkpoint of the first row
+            TableDataExtractor interrupted = new TableDataExtractor()
+              .withTargetDirectory(new File(TARGET_DIR, "resumed"))
+              .withCheckpointInterval(1)
+              .withCodex(new FailingCodex(table.getColumnCount() + 1));
+            assertThrows(IllegalStateException.class, () -> interrupted.writeTableData(table));
+            File file = new File(new File(TARGET_DIR, "resumed"),
+              reference.getParentFile().getName() + File.separator + reference.getName());
+            assertTrue(TableCheckpoint.fileFor(file).exists());
+
+            File resumed = new TableDataExtractor()
+              .withTargetDirectory(new File(TARGET_DIR, "resumed"))
+              .withCheckpointInterval(1)
+              .writeTableData(table);
+            assertTrue(FileUtils.contentEquals(reference, resumed));
+            assertFalse(TableCheckpoint.fileFor(resumed).exists());
+        }
+    }
+
+    @Test
+    void skippedTableListsSidecarFiles() throws Exception {
+        FileUtils.deleteDirectory(TARGET_DIR);
+        try (Database db = new DatabaseBuilder(DATABASE).setReadOnly(true).open()) {
+            Table table = db.getTable("TableDataTypes");
+            List<File> files = new TableDataExtractor()
+              .withTargetDirectory(new File(TARGET_DIR, "sidecars"))
+              .withCheckpointInterval(1)
+              .withSidecarThreshold(10000)
+              .writeTableFiles(table);
+            assertEquals(2, files.size());
+
+            // as if the extraction of the database was interrupted after this table
+            TableCheckpoint.complete(files.get(0).length(), table.getRowCount()).write(files.get(0));
+            assertEquals(files, new TableDataExtractor()
+              .withTargetDirectory(new File(TARGET_DIR, "sidecars"))
+              .withCheckpointInterval(1)
+              .withSidecarThreshold(10000)
+              .writeTableFiles(table));
+        }
+    }
+
+    private static class FailingCodex extends DefaultCodex {
+
+        // encodes like the codex of the reference, which has encoders
+        private final DefaultCodex codex = new DefaultCodex(null);
+        private int encodings;
+
+        private FailingCodex(int encodings) {
+            super(null);
+            this.encodings = encodings;
+        }
+
+        @Override
+        public Object encode(DataType type, Object value) {
+            count();
+            return super.encode(type, value);
+        }
+
+        @Override
+        public Encoder getEncoder(DataType type) {
+            Encoder encoder = codex.getEncoder(type);
+            if (encoder == null) {
+                return null;
+            }
+            return (value, out) -> {
+                count();
+                return encoder.encode(value, out);
+            };
+        }
+
+        private void count() {
+            if (--encodings < 0) {
+                throw new IllegalStateException("Interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package nl.knaw.dans.repo.axxess.acc2csv;
+
+import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.IndexBuilder;
+import com.healthmarketscience.jackcess.Table;
+import com.healthmarketscience.jackcess.TableBuilder;
+import nl.knaw.dans.repo.axxess.csv2acc.Csv2AxxessConverter;
+import nl.knaw.dans.repo.axxess.impl.SimpleDatabaseOpener;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TableSelectionTest {
+
+    private static final File DATABASE = new File("src/test/resources/integration/types/db/all_datatypes.mdb");
+    private static final File TARGET_DIR = new File("target/test-selection");
+
+    @AfterAll
+    static void afterAll() throws Exception {
+        FileUtils.deleteDirectory(TARGET_DIR);
+    }
+
+    @Test
+    void rowFiltersSelectRows() throws Exception {
+        // ID and dtText have an index of their own, dtByte and dtGeneralDate do not
+        assertEquals(Collections.singletonList("2"), extractIds(new TableSelection().where("TableDataTypes.ID=2")));
+        assertEquals(Collections.singletonList("2"),
+          extractIds(new TableSelection().where("TableDataTypes.dtText=another")));
+        assertEquals(Collections.singletonList("2"), extractIds(new TableSelection().where("TableDataTypes.dtByte>0")));
+        assertEquals(Collections.singletonList("1"),
+          extractIds(new TableSelection().where("TableDataTypes.dtGeneralDate<2001-01-01T00:00:00")));
+        assertEquals(Arrays.asList("1", "2"),
+          extractIds(new TableSelection().whereBetween("TableDataTypes", "ID", 1, null)));
+        assertEquals(Collections.emptyList(),
+          extractIds(new TableSelection().where("TableDataTypes.ID>=2").where("TableDataTypes.dtByte<0")));
+    }
+
+    @Test
+    void rowFilterExpressionsAreTrimmed() throws Exception {
+        assertEquals(Collections.singletonList("2"), extractIds(new TableSelection().where("TableDataTypes.ID = 2")));
+        assertEquals(Collections.singletonList("2"),
+          extractIds(new TableSelection().where(" TableDataTypes.dtText =  another ")));
+        assertEquals(Collections.singletonList("2"), extractIds(new TableSelection().where("tabledatatypes.ID>=2")));
+    }
+
+    @Test
+    void rowFiltersOnTextColumnsDoNotDependOnIndexOrdering() throws Exception {
+        File databaseFile = new File(TARGET_DIR, "text.accdb");
+        TARGET_DIR.mkdirs();
+        try (Database db = DatabaseBuilder.create(Database.FileFormat.V2010, databaseFile)) {
+            Table table = new TableBuilder("t")
+              .addColumn(new ColumnBuilder("name", DataType.TEXT))
+              .addIndex(new IndexBuilder("name").addColumns("name"))
+              .toTable(db);
+            for (String name : Arrays.asList("a", "B", "b", "C", "c")) {
+                table.addRow(name);
+            }
+        }
+        try (Database db = new SimpleDatabaseOpener().open(databaseFile, true)) {
+            StringWriter out = new StringWriter();
+            new TableDataExtractor()
+              .withSelection(new TableSelection().where("t.name>=b").where("t.name<c"))
+              .getTableData(db.getTable("t"), out);
+            assertEquals("name\r\nb\r\n", out.toString());
+        }
+    }
+
+    @Test
+    void rowFiltersIgnoreDescendingIndexes() throws Exception {
+        File databaseFile = new File(TARGET_DIR, "descending.accdb");
+        TARGET_DIR.mkdirs();
+        try (Database db = DatabaseBuilder.create(Database.FileFormat.V2010, databaseFile)) {
+            Table table = new TableBuilder("t")
+              .addColumn(new ColumnBuilder("ID", DataType.LONG))
+              .addIndex(new IndexBuilder("IDDesc").addColumns(false, "ID"))
+              .toTable(db);
+            for (int id = 1; id <= 5; id++) {
+                table.addRow(id);
+            }
+        }
+        try (Database db = new SimpleDatabaseOpener().open(databaseFile, true)) {
+            StringWriter out = new StringWriter();
+            new TableDataExtractor()
+              .withSelection(new TableSelection().where("t.ID>=2").where("t.ID<4"))
+              .getTableData(db.getTable("t"), out);
+            assertEquals("ID\r\n2\r\n3\r\n", out.toString());
+        }
+    }
+
+    @Test
+    void metadataDescribesSelectedTablesAndColumns() throws Exception {
+        TableSelection selection = new TableSelection()
+          .excludeTables("smallTable")
+          .excludeColumns("dtOLE|TableDataTypes\\..*Date");
+        List<File> csvFiles = new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "csv"))
+          .withSelection(selection)
+          .convert(DATABASE);
+        assertEquals(2, csvFiles.size());
+        String metadata = FileUtils.readFileToString(csvFiles.get(0), "UTF-8");
+        assertTrue(metadata.contains("[DB],Table names,COMPLEX_TYPE,TableDataTypes"));
+        assertTrue(metadata.contains("[DB],Relationship count,INT,0"));
+        assertFalse(metadata.contains("dtOLE"));
+        assertFalse(metadata.contains("dtShortDate"));
+
+        Csv2AxxessConverter converter = new Csv2AxxessConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "db"))
+          .setIncludeManifest(true);
+        List<File> dbFiles = converter.convert(csvFiles.get(0));
+        assertEquals(0, converter.getErrorCount());
+        try (Database db = DatabaseBuilder.open(dbFiles.get(0))) {
+            assertEquals(Collections.singleton("TableDataTypes"), db.getTableNames());
+            Table table = db.getTable("TableDataTypes");
+            assertEquals(32 - 5, table.getColumnCount());
+            assertEquals(2, table.getRowCount());
+        }
+    }
+
+    private static List<String> extractIds(TableSelection selection) throws Exception {
+        try (Database db = new SimpleDatabaseOpener().open(DATABASE, true)) {
+            StringWriter out = new StringWriter();
+            new TableDataExtractor()
+              .withSelection(selection.includeColumns("ID"))
+              .getTableData(db.getTable("TableDataTypes"), out);
+            List<String> lines = Arrays.asList(out.toString().split("\r\n"));
+            return lines.subList(1, lines.size());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.QuoteMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class CsvChannelWriterTest {
+
+    private static final String[] FORMAT_NAMES = {"Default", "Excel", "InformixUnload", "InformixUnloadCsv",
+      "MySQL", "PostgreSQLCsv", "PostgreSQLText", "RFC4180", "TDF"};
+
+    private static final Charset[] CHARSETS = {StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1,
+      StandardCharsets.UTF_16, Charset.forName("windows-1252")};
+
+    // characters that matter for quoting, escaping, trimming and encoding
+    private static final String ALPHABET = "ab Z09,;|\t\"'\\#!$+-.\r\n\u0000\u001f~\u007f\u00e9\u20ac\ud83d\ude00\ud800";
+
+    @Test
+    void outputEqualsCSVPrinterOutput() throws Exception {
+        Random random = new Random(42);
+        List<Object[]> records = randomRecords(random, 500);
+        for (CSVFormat format : formats()) {
+            for (Charset charset : CHARSETS) {
+                assertArrayEquals(printWithCSVPrinter(format, charset, records),
+                  printWithChannelWriter(format, charset, records), format + " " + charset);
+            }
+        }
+    }
+
+    @Test
+    void headerCommentsAreNotSupported() {
+        assertFalse(CsvChannelWriter.supports(CSVFormat.DEFAULT.withHeaderComments("comment")));
+    }
+
+    private static List<CSVFormat> formats() {
+        List<CSVFormat> formats = new ArrayList<>();
+        for (String name : FORMAT_NAMES) {
+            CSVFormat format = CSVFormat.valueOf(name);
+            formats.add(format);
+            formats.add(format.withTrim().withTrailingDelimiter());
+            formats.add(format.withNullString("NULL").withRecordSeparator(null));
+        }
+        for (QuoteMode quoteMode : QuoteMode.values()) {
+            formats.add(CSVFormat.RFC4180.withEscape('\\').withQuoteMode(quoteMode).withNullString("-"));
+        }
+        formats.add(CSVFormat.RFC4180.withQuote(null));
+        return formats;
+    }
+
+    private static List<Object[]> randomRecords(Random random, int count) {
+        List<Object[]> records = new ArrayList<>();
+        for (int r = 0; r < count; r++) {
+            Object[] record = new Object[1 + random.nextInt(5)];
+            for (int c = 0; c < record.length; c++) {
+                int kind = random.nextInt(10);
+                if (kind == 0) {
+                    record[c] = null;
+                } else if (kind == 1) {
+                    record[c] = random.nextInt(2000) - 1000;
+                } else if (kind == 2) {
+                    record[c] = new BigDecimal(random.nextInt()).movePointLeft(3);
+                } else {
+                    StringBuilder sb = new StringBuilder();
+                    int length = random.nextInt(8);
+                    for (int i = 0; i < length; i++) {
+                        sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                    }
+                    record[c] = sb.toString();
+                }
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static byte[] printWithCSVPrinter(CSVFormat format, Charset charset, List<Object[]> records)
+      throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CSVPrinter printer = new CSVPrinter(new OutputStreamWriter(out, charset), format);
+        for (Object[] record : records) {
+            printer.printRecord(record);
+        }
+        printer.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] printWithChannelWriter(CSVFormat format, Charset charset, List<Object[]> records)
+      throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvChannelWriter writer = new CsvChannelWriter(Channels.newChannel(out), format, charset);
+        for (Object[] record : records) {
+            writer.printRecord(record);
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+}
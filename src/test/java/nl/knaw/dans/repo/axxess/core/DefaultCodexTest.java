@@ -3,13 +3,18 @@ package nl.knaw.dans.repo.axxess.core;
 import com.healthmarketscience.jackcess.DataType;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class DefaultCodexTest {
@@ -129,4 +134,157 @@ class DefaultCodexTest {
         assertEquals(da, db);
     }
 
+    @Test
+    void encodersAppendEncodedValues() throws Exception {
+        DefaultCodex codex = new DefaultCodex(null).withBooleanStrings("on", null);
+
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(1899, 11, 30, 7, 5, 3);
+        Date time = cal.getTime();
+        cal.set(987, 0, 2, 23, 59, 0);
+        Date dateTime = cal.getTime();
+        Object[][] values = {
+          {DataType.BOOLEAN, true}, {DataType.BOOLEAN, false}, {DataType.BYTE, (byte) -7},
+          {DataType.INT, (short) 300}, {DataType.LONG, Integer.MIN_VALUE}, {DataType.BIG_INT, Long.MAX_VALUE},
+          {DataType.FLOAT, 1.1f}, {DataType.DOUBLE, -0.1 / 3}, {DataType.DOUBLE, 1e300},
+          {DataType.MONEY, new BigDecimal("-12.3400")}, {DataType.MONEY, 7},
+          {DataType.SHORT_DATE_TIME, time}, {DataType.SHORT_DATE_TIME, dateTime},
+          {DataType.TEXT, "foo\r\nbar"}, {DataType.MEMO, 42}, {DataType.OLE, new byte[0]},
+          {DataType.OLE, new byte[] {-1}}, {DataType.OLE, new byte[] {-1, 0}}, {DataType.OLE, new byte[] {-1, 0, 1}},
+          {DataType.OLE, new byte[10000]}, {DataType.OLE, "not bytes"}};
+        new Random(20).nextBytes((byte[]) values[values.length - 2][1]);
+        StringBuilder out = new StringBuilder();
+        for (Object[] value : values) {
+            DataType type = (DataType) value[0];
+            Object encoded = codex.encode(type, value[1]);
+            out.setLength(0);
+            assertEquals(encoded != null, codex.getEncoder(type).encode(value[1], out), value[1].toString());
+            assertEquals(encoded == null ? "" : encoded.toString(), out.toString());
+        }
+        assertNull(codex.getEncoder(DataType.GUID));
+    }
+
+    @Test
+    void decimalsAreAppendedAsToString() throws Exception {
+        Codex.Encoder encoder = new DefaultCodex(null).getEncoder(DataType.MONEY);
+        List<BigDecimal> values = new ArrayList<>(Arrays.asList(BigDecimal.ZERO, new BigDecimal("0.0000"),
+          new BigDecimal("-0.0001"), new BigDecimal("1E+3"), new BigDecimal("1E-7"), new BigDecimal("0.0000000"),
+          BigDecimal.valueOf(Long.MIN_VALUE, 4), BigDecimal.valueOf(Long.MAX_VALUE, 4),
+          BigDecimal.valueOf(Long.MAX_VALUE / 2, 4), new BigDecimal("123456789012345678901234.5678")));
+        Random random = new Random(23);
+        for (int i = 0; i < 10000; i++) {
+            values.add(BigDecimal.valueOf(random.nextLong() >> random.nextInt(64), random.nextInt(9) - 1));
+        }
+        StringBuilder out = new StringBuilder();
+        for (BigDecimal value : values) {
+            out.setLength(0);
+            assertTrue(encoder.encode(value, out));
+            assertEquals(value.toString(), out.toString());
+        }
+    }
+
+    @Test
+    void decodersEqualJdkParsing() throws Exception {
+        DefaultCodex codex = new DefaultCodex(null).withBooleanStrings("on", null);
+        List<String> values = new ArrayList<>(Arrays.asList("", "0", "-0", "7", "-128", "127", "128", "1023", "1024",
+          "999999999", "-999999999", "2147483647", "-2147483648", "2147483648", "+5", "-", "5-", "x", "1.", ".5",
+          "-.5", ".", "0.1", "-0.0", "1.0E7", "1.23456794E9", "9.9E-324", "1.0E23", "1E5", "1e5", "1.0E+5",
+          "1.0E", "1.0E-", "NaN", "-Infinity", "12345.1234", "0.0001", "1234567890.0000", "123456789012345678.9",
+          "0.00000000000000000000000000000001", "9007199254740993", "16777217", " 1"));
+        Random random = new Random(24);
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            values.add(Integer.toString(random.nextInt(100000) - 50000));
+            values.add(Double.toString(random.nextInt(1000000) / 100.0));
+            out.setLength(0);
+            values.add(ShortestDecimal.append(Double.longBitsToDouble(random.nextLong()), out).toString());
+            out.setLength(0);
+            values.add(ShortestDecimal.append(Float.intBitsToFloat(random.nextInt()), out).toString());
+        }
+        DataType[] types = {DataType.BOOLEAN, DataType.BYTE, DataType.INT, DataType.LONG, DataType.MONEY,
+          DataType.FLOAT, DataType.DOUBLE};
+        for (DataType type : types) {
+            Codex.Decoder decoder = codex.getDecoder(type);
+            for (String value : values) {
+                Object expected;
+                try {
+                    expected = value.isEmpty() ? null : parse(type, value);
+                } catch (NumberFormatException e) {
+                    expected = e.getClass();
+                }
+                for (Object actual : Arrays.asList(decode(decoder, value), decode(codex, type, value))) {
+                    assertEquals(expected, actual, type + " " + value);
+                }
+            }
+        }
+        assertNull(codex.getDecoder(DataType.OLE));
+    }
+
+    private static Object parse(DataType type, String value) {
+        switch (type) {
+            case BOOLEAN:
+                return value.equals("on");
+            case BYTE:
+                return Byte.valueOf(value);
+            case INT:
+            case LONG:
+                return Integer.valueOf(value);
+            case MONEY:
+                return new BigDecimal(value);
+            case FLOAT:
+                return Float.valueOf(value);
+            default:
+                return Double.valueOf(value);
+        }
+    }
+
+    private static Object decode(Codex.Decoder decoder, String value) {
+        try {
+            return decoder.decode(value);
+        } catch (NumberFormatException e) {
+            return e.getClass();
+        }
+    }
+
+    private static Object decode(Codex codex, DataType type, String value) {
+        try {
+            return codex.decode(type, value);
+        } catch (NumberFormatException e) {
+            return e.getClass();
+        }
+    }
+
+    @Test
+    void stringsWithoutLineBreaksAreNotCopied() throws Exception {
+        DefaultCodex codex = new DefaultCodex(null);
+        String plain = "no line breaks";
+        assertSame(plain, codex.encode(DataType.MEMO, plain));
+        assertSame(plain, codex.decode(DataType.MEMO, plain));
+
+        String text = "\r\n\u0001\u0002\r";
+        assertEquals(text.replaceAll("\r", "\u0002").replaceAll("\n", "\u0001"), codex.encode(DataType.TEXT, text));
+        assertEquals(text.replaceAll("\u0002", "\r").replaceAll("\u0001", "\n"), codex.decode(DataType.TEXT, text));
+    }
+
+    @Test
+    void datesEqualCalendarDates() throws Exception {
+        DefaultCodex codex = new DefaultCodex(null);
+        Calendar cal = Calendar.getInstance();
+        Random random = new Random(11);
+        // hours around the turn of the year and the summer, every year from 1583 to 2100
+        for (int year = 1583; year <= 2100; year++) {
+            for (int i = 0; i < 40; i++) {
+                cal.clear();
+                cal.set(year, i < 20 ? 0 : 2 + random.nextInt(9), 1 + random.nextInt(28), random.nextInt(24),
+                  random.nextInt(60), random.nextInt(60));
+                Date date = cal.getTime();
+                String encoded = String.format("%04d-%02d-%02dT%02d:%02d:%02d", cal.get(Calendar.YEAR),
+                  cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.HOUR_OF_DAY),
+                  cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND));
+                assertEquals(encoded, codex.encode(DataType.SHORT_DATE_TIME, date));
+                assertEquals(date, codex.decode(DataType.SHORT_DATE_TIME, encoded));
+            }
+        }
+    }
 }
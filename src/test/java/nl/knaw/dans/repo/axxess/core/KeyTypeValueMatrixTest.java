@@ -0,0 +1,50 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import com.healthmarketscience.jackcess.DataType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class KeyTypeValueMatrixTest {
+
+    @Test
+    void lookupsFollowChanges() {
+        KeyTypeValueMatrix matrix = new KeyTypeValueMatrix()
+          .add("Name", DataType.TEXT, "table0")
+          .prefixKeys(ObjectType.TABLE, 0);
+        assertEquals("table0", matrix.get(ObjectType.TABLE, "Name", 0).getValue());
+        assertNull(matrix.get(ObjectType.TABLE, "Name", 1));
+
+        // after the first lookup
+        matrix.append(new KeyTypeValueMatrix()
+          .add("Name", DataType.TEXT, "table1")
+          .add("Row count", DataType.INT, 3)
+          .prefixKeys(ObjectType.TABLE, 1));
+        matrix.append(new KeyTypeValueMatrix()
+          .add("Name", DataType.TEXT, "column0")
+          .prefixKeys(ObjectType.TABLE_COLUMN, 1, 0));
+        assertEquals("table1", matrix.get(ObjectType.TABLE, "Name", 1).getValue());
+        assertEquals(3, matrix.get(ObjectType.TABLE, "Row count", 1).getValue());
+        assertEquals("column0", matrix.get(ObjectType.TABLE_COLUMN, "Name", 1, 0).getValue());
+        assertEquals(2, matrix.getLines(ObjectType.TABLE, 1).size());
+        assertEquals(Arrays.asList("[T0]", "[T1]"), new ArrayList<>(matrix.getObjects(ObjectType.TABLE).keySet()));
+
+        matrix.prefixKeys(ObjectType.QUERY, 7);
+        assertNull(matrix.get(ObjectType.TABLE, "Name", 0));
+        assertEquals("table0", matrix.get(ObjectType.QUERY, "Name", 7).getValue());
+        assertEquals(4, matrix.getLines(ObjectType.QUERY, 7).size());
+
+        // through the list of all lines
+        matrix.getLines().remove(0);
+        KTV name = new KTV("Name", DataType.TEXT, "query8");
+        name.setPrefix(ObjectType.QUERY.prefix(8));
+        matrix.getLines().add(name);
+        assertEquals("table1", matrix.get(ObjectType.QUERY, "Name", 7).getValue());
+        assertEquals("query8", matrix.get(ObjectType.QUERY, "Name", 8).getValue());
+        assertEquals(4, matrix.getLines().size());
+    }
+}
@@ -0,0 +1,37 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObjectPrefixTest {
+
+    @Test
+    void parsePrefixes() {
+        ObjectPrefix prefix = new ObjectPrefix();
+        for (ObjectType type : ObjectType.values()) {
+            if (type != ObjectType.INDEX && type != ObjectType.COLUMN) {
+                assertTrue(prefix.parse(type.prefix(12, 3)));
+                assertEquals(type, prefix.getType());
+            }
+        }
+        assertEquals(12, prefix.getFirstIndex());
+        assertEquals(3, prefix.getSecondIndex());
+
+        assertTrue(prefix.parse("[Q7]"));
+        assertEquals(7, prefix.getFirstIndex());
+        assertEquals(-1, prefix.getSecondIndex());
+        assertTrue(prefix.parse("[T][X]"));
+        assertEquals(ObjectType.TABLE_INDEX, prefix.getType());
+        assertEquals(-1, prefix.getFirstIndex());
+
+        for (String bad : new String[] {"", "[]", "[DB", "[DBX]", "[X1]", "[T1][Q2]", "[T1]x", "[T-1]",
+          "[R99999999999]", "Prefix"}) {
+            assertFalse(prefix.parse(bad), bad);
+            assertNull(prefix.getType());
+        }
+    }
+}
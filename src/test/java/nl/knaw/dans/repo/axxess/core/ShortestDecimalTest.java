@@ -0,0 +1,68 @@
+package nl.knaw.dans.repo.axxess.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShortestDecimalTest {
+
+    @Test
+    void appendDoubles() {
+        assertEquals("0.0", format(0.0));
+        assertEquals("-0.0", format(-0.0));
+        assertEquals("NaN", format(Double.NaN));
+        assertEquals("-Infinity", format(Double.NEGATIVE_INFINITY));
+        assertEquals("100.0", format(100));
+        assertEquals("123.456", format(123.456));
+        assertEquals("0.001", format(0.001));
+        assertEquals("9.99E-4", format(0.000999));
+        assertEquals("9999999.0", format(9999999));
+        assertEquals("1.0E7", format(1e7));
+        assertEquals("0.30000000000000004", format(0.1 + 0.2));
+        assertEquals("4.9E-324", format(Double.MIN_VALUE));
+        assertEquals("1.7976931348623157E308", format(Double.MAX_VALUE));
+        // Double.toString of Java 8 gives 1.9999999999999998E23 and 2.82879384806159008E17
+        assertEquals("2.0E23", format(2e23));
+        assertEquals("2.82879384806159E17", format(2.82879384806159E17));
+
+        Random random = new Random(13);
+        for (int i = 0; i < 100000; i++) {
+            double v = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(v)) {
+                String formatted = format(v);
+                assertEquals(v, Double.parseDouble(formatted), formatted);
+                assertTrue(formatted.length() <= Double.toString(v).length(), formatted);
+            }
+        }
+    }
+
+    @Test
+    void appendFloats() {
+        assertEquals("1.1", format(1.1f));
+        assertEquals("-0.0", format(-0.0f));
+        assertEquals("1.4E-45", format(Float.MIN_VALUE));
+        assertEquals("3.4028235E38", format(Float.MAX_VALUE));
+        assertEquals("1.0E7", format(1e7f));
+        // Float.toString of Java 8 gives 4.9378001E10
+        assertEquals("4.9378E10", format(4.9378E10f));
+
+        Random random = new Random(17);
+        for (int i = 0; i < 100000; i++) {
+            float v = Float.intBitsToFloat(random.nextInt());
+            if (!Float.isNaN(v)) {
+                assertEquals(v, Float.parseFloat(format(v)));
+            }
+        }
+    }
+
+    private static String format(double v) {
+        return ShortestDecimal.append(v, new StringBuilder()).toString();
+    }
+
+    private static String format(float v) {
+        return ShortestDecimal.append(v, new StringBuilder()).toString();
+    }
+}
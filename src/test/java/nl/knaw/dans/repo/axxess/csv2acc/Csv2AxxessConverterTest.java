@@ -1,9 +1,33 @@
 package nl.knaw.dans.repo.axxess.csv2acc;
 
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Table;
+import nl.knaw.dans.repo.axxess.acc2csv.Axxess2CsvConverter;
+import nl.knaw.dans.repo.axxess.core.SidecarStore;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 public class Csv2AxxessConverterTest {
 
+    private static final File DATABASE = new File("src/test/resources/integration/types/db/all_datatypes.mdb");
+    private static final File TARGET_DIR = new File("target/test-parts");
+
     //@Test
     void reconstruct() throws Exception {
         String file = "axxess-out/Rhijn_1848_mdb";
@@ -11,4 +35,98 @@ public class Csv2AxxessConverterTest {
         Csv2AxxessConverter converter = new Csv2AxxessConverter();
         converter.convert(file);
     }
+
+    @Test
+    void partFilesBuildSameDatabase() throws Exception {
+        FileUtils.deleteDirectory(TARGET_DIR);
+        File whole = roundTrip("whole", 0, 1, 0);
+        File parts = roundTrip("parts", 1, 3, 0);
+
+        try (Database expected = DatabaseBuilder.open(whole); Database actual = DatabaseBuilder.open(parts)) {
+            assertEquals(expected.getTableNames(), actual.getTableNames());
+            for (String tableName : expected.getTableNames()) {
+                assertEquals(readRows(expected.getTable(tableName)), readRows(actual.getTable(tableName)));
+            }
+        }
+        FileUtils.deleteDirectory(TARGET_DIR);
+    }
+
+    @Test
+    void sidecarFilesBuildSameDatabase() throws Exception {
+        FileUtils.deleteDirectory(TARGET_DIR);
+        File inline = roundTrip("inline", 0, 1, 0);
+        File sidecars = roundTrip("sidecars", 0, 1, 10000);
+
+        // the picture of the first row is larger than the threshold, that of the second row is not
+        File csvDirectory = new File(TARGET_DIR, "sidecars-csv/all_datatypes_mdb");
+        List<CSVRecord> records;
+        try (Reader reader = new FileReader(new File(csvDirectory, "all_datatypes.mdb.TableDataTypes.csv"))) {
+            records = CSVFormat.RFC4180.withFirstRecordAsHeader().parse(reader).getRecords();
+        }
+        assertTrue(SidecarStore.isReference(records.get(0).get("dtOLE")));
+        assertFalse(SidecarStore.isReference(records.get(1).get("dtOLE")));
+        assertEquals(1, csvDirectory.list((dir, filename) -> filename.endsWith(".bin")).length);
+
+        try (Database expected = DatabaseBuilder.open(inline); Database actual = DatabaseBuilder.open(sidecars)) {
+            for (String tableName : expected.getTableNames()) {
+                assertEquals(readRows(expected.getTable(tableName)), readRows(actual.getTable(tableName)));
+            }
+        }
+        FileUtils.deleteDirectory(TARGET_DIR);
+    }
+
+    @Test
+    void inMemoryBuildEqualsFileBuild() throws Exception {
+        FileUtils.deleteDirectory(TARGET_DIR);
+        List<File> csvFiles = new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "memory-csv"))
+          .convert(DATABASE);
+        List<File> onFile = new Csv2AxxessConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "file-db"))
+          .setIncludeManifest(true)
+          .convert(csvFiles.get(0));
+        List<File> inMemory = new Csv2AxxessConverter()
+          .withTargetDirectory(new File(TARGET_DIR, "memory-db"))
+          .withInMemoryLimit(Long.MAX_VALUE)
+          .setIncludeManifest(true)
+          .convert(csvFiles.get(0));
+
+        try (Database expected = DatabaseBuilder.open(onFile.get(0));
+             Database actual = DatabaseBuilder.open(inMemory.get(0))) {
+            assertEquals(expected.getTableNames(), actual.getTableNames());
+            for (String tableName : expected.getTableNames()) {
+                assertEquals(readRows(expected.getTable(tableName)), readRows(actual.getTable(tableName)));
+            }
+        }
+        String manifest = FileUtils.readFileToString(inMemory.get(inMemory.size() - 1), "UTF-8");
+        assertTrue(manifest.contains(DigestUtils.sha1Hex(FileUtils.readFileToByteArray(inMemory.get(0)))));
+        FileUtils.deleteDirectory(TARGET_DIR);
+    }
+
+    private static File roundTrip(String name, long maxRowsPerPart, int partParallelism, long sidecarThreshold)
+      throws Exception {
+        List<File> csvFiles = new Axxess2CsvConverter()
+          .withTargetDirectory(new File(TARGET_DIR, name + "-csv"))
+          .withMaxRowsPerPart(maxRowsPerPart)
+          .withSidecarThreshold(sidecarThreshold)
+          .setIncludeManifest(sidecarThreshold > 0)
+          .convert(DATABASE);
+        Csv2AxxessConverter converter = new Csv2AxxessConverter()
+          .withTargetDirectory(new File(TARGET_DIR, name + "-db"))
+          .withPartParallelism(partParallelism)
+          .setIncludeManifest(true);
+        List<File> dbFiles = converter.convert(csvFiles.get(0));
+        assertEquals(0, converter.getErrorCount());
+        assertTrue(dbFiles.get(0).exists());
+        return dbFiles.get(0);
+    }
+
+    private static List<String> readRows(Table table) {
+        List<String> rows = new ArrayList<>();
+        for (Row row : table) {
+            // deep, because OLE values are byte arrays
+            rows.add(Arrays.deepToString(row.values().toArray()));
+        }
+        return rows;
+    }
 }
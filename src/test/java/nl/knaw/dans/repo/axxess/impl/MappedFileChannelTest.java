@@ -0,0 +1,67 @@
+package nl.knaw.dans.repo.axxess.impl;
+
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Table;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MappedFileChannelTest {
+
+    private static final File DATABASE = new File("src/test/resources/integration/types/db/all_datatypes.mdb");
+
+    @Test
+    void readsEqualFileChannelReads() throws Exception {
+        File file = new File("target/test-mapped/random.bin");
+        byte[] bytes = new byte[100000];
+        Random random = new Random(3);
+        random.nextBytes(bytes);
+        FileUtils.writeByteArrayToFile(file, bytes);
+
+        // small regions, so that reads cross region boundaries
+        try (FileChannel mapped = new MappedFileChannel(file, 4099);
+             FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            assertEquals(channel.size(), mapped.size());
+            for (int i = 0; i < 1000; i++) {
+                long position = random.nextInt(bytes.length + 100);
+                ByteBuffer expected = ByteBuffer.allocate(random.nextInt(10000));
+                ByteBuffer actual = ByteBuffer.allocate(expected.capacity());
+                assertEquals(channel.read(expected, position), mapped.read(actual, position));
+                assertArrayEquals(expected.array(), actual.array());
+            }
+        }
+        FileUtils.deleteQuietly(file);
+    }
+
+    @Test
+    void mappedDatabaseReadsSameRows() throws Exception {
+        try (Database db = new SimpleDatabaseOpener().open(DATABASE, true);
+             Database mapped = new SimpleDatabaseOpener().setMemoryMapped(true).open(DATABASE, true)) {
+            assertEquals(db.getTableNames(), mapped.getTableNames());
+            for (String tableName : db.getTableNames()) {
+                assertEquals(readRows(db.getTable(tableName)), readRows(mapped.getTable(tableName)));
+            }
+        }
+    }
+
+    private static String readRows(Table table) {
+        List<String> rows = new ArrayList<>();
+        for (Row row : table) {
+            // deep, because OLE values are byte arrays
+            rows.add(Arrays.deepToString(row.values().toArray()));
+        }
+        return rows.toString();
+    }
+}
@@ -43,6 +43,7 @@ public class SimpleFilenameComposerTest {
         String csvDirectoryName =       "example db_mdb";
         String metadataFilename =       "example db.mdb._metadata.csv";
         String tableFilename =          "example db.mdb.a_simple_table.csv";
+        String partFilename =           "example db.mdb.a_simple_table.part-0012.csv";
         String zipFilename =            "example db.mdb.csv.zip";
         String newDatabaseFilename =    "example db.mdb.ext";
         //@formatter:on
@@ -50,6 +51,7 @@ public class SimpleFilenameComposerTest {
         assertEquals(csvDirectoryName, composer.getCsvDirectoryName(database));
         assertEquals(metadataFilename, composer.getMetadataFilename(database));
         assertEquals(tableFilename, composer.getTableDataFilename(database.getTable("a simple table")));
+        assertEquals(partFilename, composer.getTableDataPartFilename(database.getTable("a simple table"), 12));
         assertEquals(zipFilename, composer.getArchiveFilename(database));
         assertEquals(newDatabaseFilename,
           composer.getNewDatabaseFilename("example db.mdb.____metadata.csv", ".ext"));
@@ -0,0 +1,78 @@
+package nl.knaw.dans.repo.axxess.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ZipChannelWriterTest {
+
+    private static final File TARGET_DIR = new File("target/test-zip");
+
+    @Test
+    void storedEntriesCanBeStreamedBack() throws Exception {
+        writeAndRead(false);
+    }
+
+    @Test
+    void deflatedEntriesCanBeStreamedBack() throws Exception {
+        writeAndRead(true, 1);
+    }
+
+    @Test
+    void blocksDeflatedInParallelCanBeStreamedBack() throws Exception {
+        writeAndRead(true, 3);
+    }
+
+    private void writeAndRead(boolean compress) throws Exception {
+        writeAndRead(compress, 1);
+    }
+
+    private void writeAndRead(boolean compress, int threads) throws Exception {
+        TARGET_DIR.mkdirs();
+        File file = new File(TARGET_DIR, "test-" + compress + "-" + threads + ".zip");
+        List<String> contents = new ArrayList<>();
+        try (ZipChannelWriter writer = new ZipChannelWriter(file, compress, threads)) {
+            for (int i = 0; i < 5; i++) {
+                StringBuilder sb = new StringBuilder();
+                for (int j = 0; j < i * 10000; j++) {
+                    sb.append("row ").append(j).append(", \u00e9\n");
+                }
+                contents.add(sb.toString());
+                WritableByteChannel channel = writer.newEntry("entry-" + i + ".csv");
+                channel.write(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)));
+                if (i % 2 == 0) {
+                    channel.close(); // other entries are ended by the next entry
+                }
+            }
+        }
+
+        int index = 0;
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(file))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                assertEquals("entry-" + index + ".csv", entry.getName());
+                assertEquals(contents.get(index++), IOUtils.toString(in, StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(5, index);
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(5, zipFile.size());
+            assertEquals(contents.get(3),
+              IOUtils.toString(zipFile.getInputStream(zipFile.getEntry("entry-3.csv")), StandardCharsets.UTF_8));
+        }
+        FileUtils.deleteQuietly(file);
+    }
+}